@@ -1,6 +1,6 @@
 package utopia.vision.event;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import utopia.inception.event.Event;
@@ -10,7 +10,8 @@ import utopia.vision.resource.Sprite;
 import utopia.vision.resource.SpriteDrawer;
 
 /**
- * Animation events are generated by sprite drawers when animation proceeds and / or finishes
+ * Animation events are generated by sprite drawers when animation proceeds and / or finishes. 
+ * The events are immutable, which allows the drawers to reuse them.
  * @author Mikko Hilpinen
  * @since 20.5.2016
  */
@@ -18,11 +19,17 @@ public class AnimationEvent implements Event
 {
 	// ATTRIBUTES	----------------
 	
+	/**
+	 * A type mask that contains all of the event types
+	 * @see EventType#getMask()
+	 */
+	public static final int ALL_TYPES_MASK = (1 << EventType.values().length) - 1;
+	
 	private EventType type;
 	private SpriteDrawer source;
 	private Sprite sprite;
 	
-	private List<Event.Feature> features = new ArrayList<>();
+	private List<Event.Feature> features;
 	
 	
 	// CONSTRUCTOR	----------------
@@ -38,8 +45,7 @@ public class AnimationEvent implements Event
 		this.type = type;
 		this.source = source;
 		this.sprite = sprite;
-		
-		this.features.add(this.type);
+		this.features = type.features;
 	}
 	
 	
@@ -92,6 +98,22 @@ public class AnimationEvent implements Event
 		return getType().equals(type);
 	}
 	
+	/**
+	 * Creates a type mask that accepts events of the provided types
+	 * @param types The types of events accepted
+	 * @return A type mask that can be returned by 
+	 * {@link AnimationEventListener#getAnimationEventTypeMask()}
+	 */
+	public static int createTypeMask(EventType... types)
+	{
+		int mask = 0;
+		for (EventType type : types)
+		{
+			mask |= type.getMask();
+		}
+		return mask;
+	}
+	
 	/**
 	 * Creates an event selector that only accepts events of a single type
 	 * @param selectedType The type of event selected
@@ -169,5 +191,23 @@ public class AnimationEvent implements Event
 		 * These events are generated when an animation is resumed.
 		 */
 		ANIMATION_RESUMED;
+		
+		
+		// ATTRIBUTES	-------------
+		
+		// The feature list is shared between all events of this type
+		private final List<Event.Feature> features = Collections.singletonList(this);
+		
+		
+		// OTHER METHODS	---------
+		
+		/**
+		 * @return A type mask that contains only this event type
+		 * @see AnimationEvent#createTypeMask(EventType...)
+		 */
+		public int getMask()
+		{
+			return 1 << ordinal();
+		}
 	}
 }
@@ -18,6 +18,21 @@ public interface AnimationEventListener extends Handled
 	 */
 	public EventSelector<AnimationEvent> getAnimationEventSelector();
 	
+	/**
+	 * The return value of this method determines which types of events are delivered to the 
+	 * listener. If the mask doesn't contain all of the event types, only the mask is used and 
+	 * the selector isn't consulted at all, which makes delivering the events much cheaper. 
+	 * Listeners that are only interested in certain types of events should override this 
+	 * method.
+	 * @return A bit mask of the event types the listener is interested in. By default, all 
+	 * types are accepted and the selector decides which events are delivered.
+	 * @see AnimationEvent#createTypeMask(utopia.vision.event.AnimationEvent.EventType...)
+	 */
+	public default int getAnimationEventTypeMask()
+	{
+		return AnimationEvent.ALL_TYPES_MASK;
+	}
+	
 	/**
 	 * This method is called when an animation event occurs. Only events accepted by the 
 	 * listener's selector are included.
@@ -4,10 +4,12 @@ import utopia.inception.event.EventSelector;
 import utopia.inception.event.StrictEventSelector;
 import utopia.inception.handling.Handler;
 import utopia.inception.handling.HandlerType;
+import utopia.vision.event.AnimationEvent.EventType;
 
 /**
  * This handler informs numerous animation event listeners about animation 
- * events
+ * events. The events that none of the listeners are interested in are skipped without 
+ * going through the listeners.
  * @author Mikko Hilpinen
  * @since 28.8.2013
  */
@@ -18,6 +20,12 @@ public class AnimationListenerHandler extends Handler<AnimationEventListener> im
 	
 	private AnimationEvent lastEvent = null;
 	private EventSelector<AnimationEvent> selector = new StrictEventSelector<>();
+	// The mask is widened whenever a listener is added. It's only narrowed by going through 
+	// all of the listeners, active or not, after some have been removed.
+	private int typeMask = AnimationEvent.ALL_TYPES_MASK;
+	private boolean maskNeedsUpdate = true;
+	private boolean updatingMask = false;
+	private int updatedMask = 0;
 	
 	
 	// IMPLEMENTED METHODS	---------------
@@ -32,6 +40,9 @@ public class AnimationListenerHandler extends Handler<AnimationEventListener> im
 	@Override
 	public void onAnimationEvent(AnimationEvent event)
 	{
+		if (!acceptsType(event.getType()))
+			return;
+		
 		// Informs all listeners about the event
 		this.lastEvent = event;
 		handleObjects(true);
@@ -41,14 +52,77 @@ public class AnimationListenerHandler extends Handler<AnimationEventListener> im
 	@Override
 	protected boolean handleObject(AnimationEventListener h)
 	{
-		if (h.getAnimationEventSelector().selects(this.lastEvent))
+		int mask = h.getAnimationEventTypeMask();
+		if (this.updatingMask)
+		{
+			this.updatedMask |= mask;
+			return true;
+		}
+		
+		// The selector is only used when the listener doesn't limit the event types
+		if (mask == AnimationEvent.ALL_TYPES_MASK ? 
+				h.getAnimationEventSelector().selects(this.lastEvent) : 
+				(mask & this.lastEvent.getType().getMask()) != 0)
 			h.onAnimationEvent(this.lastEvent);
 		return true;
 	}
 	
+	@Override
+	public void add(AnimationEventListener listener)
+	{
+		super.add(listener);
+		if (listener != null)
+		{
+			int mask = listener.getAnimationEventTypeMask();
+			this.typeMask |= mask;
+			this.updatedMask |= mask;
+		}
+	}
+	
+	@Override
+	public void remove(AnimationEventListener listener)
+	{
+		super.remove(listener);
+		this.maskNeedsUpdate = true;
+	}
+	
 	@Override
 	public HandlerType getHandlerType()
 	{
 		return VisionHandlerType.ANIMATION_LISTENER_EVENT_HANDLER;
 	}
+	
+	
+	// OTHER METHODS	-------------------
+	
+	/**
+	 * Checks whether any of the listeners may be interested in a certain type of events. 
+	 * This can be used for skipping the events nobody listens to.
+	 * @param type The type of event
+	 * @return Whether events of that type should be delivered to this handler
+	 */
+	public boolean acceptsType(EventType type)
+	{
+		// The mask isn't updated in the middle of going through the listeners
+		if (this.maskNeedsUpdate && this.lastEvent == null && !this.updatingMask)
+			updateTypeMask();
+		return (this.typeMask & type.getMask()) != 0;
+	}
+	
+	// The mask is collected from every registered listener, including the inactive ones
+	private void updateTypeMask()
+	{
+		this.maskNeedsUpdate = false;
+		this.updatedMask = 0;
+		this.updatingMask = true;
+		try
+		{
+			handleObjects(false);
+		}
+		finally
+		{
+			this.updatingMask = false;
+		}
+		this.typeMask = this.updatedMask;
+	}
 }
@@ -0,0 +1,145 @@
+package utopia.vision.filter;
+
+import java.util.function.DoubleFunction;
+
+/**
+ * An animated filter changes over time, repeating the same cycle. The cycle is divided into 
+ * a fixed amount of steps and the same filter is used during a single step, so that the 
+ * results can be cached by step. A 30 step flash cycle thus needs at most 30 filtered versions 
+ * of each frame.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see utopia.vision.resource.SpriteDrawer#setAnimatedFilter(AnimatedFilter)
+ */
+public class AnimatedFilter
+{
+	// ATTRIBUTES	-----------------
+	
+	private DoubleFunction<? extends ImageFilter> filterFunction;
+	private double cycleDuration;
+	private ImageFilter[] filters;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new animated filter
+	 * @param filterFunction A function that creates the filter used at a certain point of the 
+	 * cycle. The function receives the start of the step as a value between 0 (inclusive) 
+	 * and 1 (exclusive).
+	 * @param steps How many different filters are used during a cycle, > 0
+	 * @param cycleMillis How long a single cycle lasts in milliseconds
+	 */
+	public AnimatedFilter(DoubleFunction<? extends ImageFilter> filterFunction, int steps, 
+			double cycleMillis)
+	{
+		this.filterFunction = filterFunction;
+		this.filters = new ImageFilter[Math.max(1, steps)];
+		this.cycleDuration = cycleMillis;
+	}
+	
+	/**
+	 * Creates a filter that cycles through all of the hues
+	 * @param steps How many different hues are used, > 0
+	 * @param cycleMillis How long it takes to go through all of the hues in milliseconds
+	 * @return A filter that cycles the hue of the image
+	 */
+	public static AnimatedFilter hueCycle(int steps, double cycleMillis)
+	{
+		return new AnimatedFilter(phase -> new HSBFilter(phase, 0), steps, cycleMillis);
+	}
+	
+	/**
+	 * Creates a filter that makes the image flash. The luminosity of the image rises smoothly 
+	 * to the maximum at the middle of the cycle and back.
+	 * @param maxScale How much the luminosity is scaled at the brightest point of the cycle
+	 * @param steps How many different luminosities are used, > 0
+	 * @param cycleMillis How long a single flash lasts in milliseconds
+	 * @return A filter that makes the image flash
+	 */
+	public static AnimatedFilter flash(float maxScale, int steps, double cycleMillis)
+	{
+		return new AnimatedFilter(phase -> new LuminosityFilter( 
+				(float) (1 + (maxScale - 1) * pulse(phase))), steps, cycleMillis);
+	}
+	
+	/**
+	 * Creates a filter that fades the image out and back in. The alpha of the image drops 
+	 * smoothly to the minimum at the middle of the cycle.
+	 * @param minAlpha How much of the alpha is left at the most transparent point of the 
+	 * cycle [0, 1]
+	 * @param steps How many different transparencies are used, > 0
+	 * @param cycleMillis How long a single fade lasts in milliseconds
+	 * @return A filter that fades the image
+	 */
+	public static AnimatedFilter fade(double minAlpha, int steps, double cycleMillis)
+	{
+		return new AnimatedFilter(phase ->
+		{
+			double alpha = 1 - (1 - minAlpha) * pulse(phase);
+			return new FunctionFilter(null, null, null, i -> (short) Math.round(i * alpha));
+		}, steps, cycleMillis);
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return How many different filters are used during a cycle
+	 */
+	public int getSteps()
+	{
+		return this.filters.length;
+	}
+	
+	/**
+	 * @return How long a single cycle lasts in milliseconds
+	 */
+	public double getCycleDuration()
+	{
+		return this.cycleDuration;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Finds the step of the cycle at a certain time
+	 * @param millis The time since the start of the animation in milliseconds
+	 * @return The step used at that time [0, steps[
+	 */
+	public int getStep(double millis)
+	{
+		if (this.cycleDuration <= 0)
+			return 0;
+		
+		double phase = (millis / this.cycleDuration) % 1;
+		if (phase < 0)
+			phase += 1;
+		return Math.min(getSteps() - 1, (int) (phase * getSteps()));
+	}
+	
+	/**
+	 * Finds the filter used during a step. Each filter is created only once.
+	 * @param step The step of the cycle [0, steps[
+	 * @return The filter used during the step
+	 */
+	public synchronized ImageFilter getFilter(int step)
+	{
+		int index = Math.floorMod(step, getSteps());
+		ImageFilter filter = this.filters[index];
+		if (filter == null)
+		{
+			filter = this.filterFunction.apply(index / (double) getSteps());
+			this.filters[index] = filter;
+		}
+		
+		return filter;
+	}
+	
+	// Rises from 0 to 1 at the middle of the cycle and back to 0
+	private static double pulse(double phase)
+	{
+		return 0.5 - 0.5 * Math.cos(phase * 2 * Math.PI);
+	}
+}
@@ -0,0 +1,561 @@
+package utopia.vision.filter;
+
+import java.awt.image.Kernel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This static interface convolves images in packed ARGB format. The blurs premultiply the 
+ * colours with alpha while they are convolved, so the colours of transparent pixels don't 
+ * bleed into the visible ones. Separable kernels, like the gaussian kernel, are applied one 
+ * axis at a time, which costs O(r) per pixel instead of O(r * r). Box blurs use running sums, 
+ * so their cost doesn't depend on the radius at all. The images are processed row by row, 
+ * so only the rows under the kernel are held as floating point channels. All methods accept 
+ * the same array as the source and the destination, in which case the source pixels are 
+ * copied into a buffer borrowed from the filter chain's pool.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class Convolution
+{
+	// ATTRIBUTES	-----------------
+	
+	private static final Map<Integer, float[]> GAUSSIAN_KERNELS = new HashMap<>();
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private Convolution()
+	{
+		// Static interface
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Finds a normalised one dimensional gaussian kernel. The standard deviation of the 
+	 * kernel is half of its radius. The kernels are created only once.
+	 * @param radius The radius of the kernel. The kernel is 2 * radius + 1 values long.
+	 * @return A gaussian kernel. Shouldn't be modified.
+	 */
+	public static synchronized float[] gaussianKernel(int radius)
+	{
+		radius = Math.max(0, radius);
+		float[] kernel = GAUSSIAN_KERNELS.get(radius);
+		if (kernel == null)
+		{
+			kernel = new float[2 * radius + 1];
+			double sigma = Math.max(radius / 2.0, 0.5);
+			double sum = 0;
+			for (int i = 0; i < kernel.length; i++)
+			{
+				int distance = i - radius;
+				kernel[i] = (float) Math.exp(-distance * distance / (2 * sigma * sigma));
+				sum += kernel[i];
+			}
+			for (int i = 0; i < kernel.length; i++)
+			{
+				kernel[i] /= sum;
+			}
+			
+			GAUSSIAN_KERNELS.put(radius, kernel);
+		}
+		
+		return kernel;
+	}
+	
+	/**
+	 * Applies a two dimensional kernel. The kernel is centred on each pixel and its values 
+	 * are used as they are, without flipping.
+	 * @param source The pixels of the image in ARGB format, one row after another
+	 * @param destination The array the results are written into. May be the source.
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param kernel The kernel that is applied. The kernel should have an odd size.
+	 * @param edgeMode How the pixels outside the image are treated
+	 * @param premultiply Whether the colours are premultiplied with alpha before they are 
+	 * convolved. Otherwise the channels are convolved separately, like 
+	 * {@link java.awt.image.ConvolveOp} does.
+	 */
+	public static void convolve(int[] source, int[] destination, int width, int height, 
+			Kernel kernel, EdgeMode edgeMode, boolean premultiply)
+	{
+		int kernelWidth = kernel.getWidth();
+		int kernelHeight = kernel.getHeight();
+		int radiusX = kernelWidth / 2;
+		int radiusY = kernelHeight / 2;
+		float[] weights = kernel.getKernelData(null);
+		
+		int[] pixels = borrowSource(source, destination, width * height);
+		try
+		{
+			// Only the rows under the kernel are kept as channels
+			Rows rows = new Rows(pixels, width, height, kernelHeight, edgeMode, premultiply);
+			float[] results = new float[width * 4];
+			for (int y = 0; y < height; y++)
+			{
+				for (int x = 0; x < width; x++)
+				{
+					float alpha = 0, red = 0, green = 0, blue = 0;
+					for (int j = 0; j < kernelHeight; j++)
+					{
+						float[] channels = rows.get(y + j - radiusY);
+						if (channels == null)
+							continue;
+						for (int i = 0; i < kernelWidth; i++)
+						{
+							int sampleX = sampleIndex(x + i - radiusX, width, edgeMode);
+							if (sampleX < 0)
+								continue;
+							
+							int index = sampleX * 4;
+							float weight = weights[j * kernelWidth + i];
+							alpha += channels[index] * weight;
+							red += channels[index + 1] * weight;
+							green += channels[index + 2] * weight;
+							blue += channels[index + 3] * weight;
+						}
+					}
+					
+					int index = x * 4;
+					results[index] = alpha;
+					results[index + 1] = red;
+					results[index + 2] = green;
+					results[index + 3] = blue;
+				}
+				
+				writeRow(results, pixels, destination, y, width, height, radiusX, radiusY, 
+						edgeMode, premultiply);
+			}
+		}
+		finally
+		{
+			returnSource(source, pixels);
+		}
+	}
+	
+	/**
+	 * Applies a separable kernel, first horizontally and then vertically
+	 * @param source The pixels of the image in ARGB format, one row after another
+	 * @param destination The array the results are written into. May be the source.
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param horizontal The kernel applied to the rows. Should have an odd length.
+	 * @param vertical The kernel applied to the columns. Should have an odd length.
+	 * @param edgeMode How the pixels outside the image are treated
+	 * @param premultiply Whether the colours are premultiplied with alpha before they are 
+	 * convolved
+	 */
+	public static void convolveSeparable(int[] source, int[] destination, int width, 
+			int height, float[] horizontal, float[] vertical, EdgeMode edgeMode, 
+			boolean premultiply)
+	{
+		int radius = vertical.length / 2;
+		int[] pixels = borrowSource(source, destination, width * height);
+		try
+		{
+			// The rows under the vertical kernel are kept with the horizontal kernel applied
+			Rows rows = new Rows(pixels, width, height, vertical.length, edgeMode, premultiply, 
+					(channels, results) -> convolveLine(channels, results, width, horizontal, 
+					edgeMode));
+			float[] results = new float[width * 4];
+			for (int y = 0; y < height; y++)
+			{
+				Arrays.fill(results, 0);
+				for (int k = 0; k < vertical.length; k++)
+				{
+					float[] channels = rows.get(y + k - radius);
+					if (channels == null)
+						continue;
+					
+					float weight = vertical[k];
+					for (int i = 0; i < results.length; i++)
+					{
+						results[i] += channels[i] * weight;
+					}
+				}
+				
+				writeRow(results, pixels, destination, y, width, height, horizontal.length / 2, 
+						radius, edgeMode, premultiply);
+			}
+		}
+		finally
+		{
+			returnSource(source, pixels);
+		}
+	}
+	
+	/**
+	 * Blurs an image with a gaussian kernel
+	 * @param source The pixels of the image in ARGB format, one row after another
+	 * @param destination The array the results are written into. May be the source.
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param radius The radius of the blur in pixels
+	 * @param edgeMode How the pixels outside the image are treated
+	 * @see #gaussianKernel(int)
+	 */
+	public static void gaussianBlur(int[] source, int[] destination, int width, int height, 
+			int radius, EdgeMode edgeMode)
+	{
+		float[] kernel = gaussianKernel(radius);
+		convolveSeparable(source, destination, width, height, kernel, kernel, edgeMode, true);
+	}
+	
+	/**
+	 * Blurs an image by averaging the pixels in a square around each pixel
+	 * @param source The pixels of the image in ARGB format, one row after another
+	 * @param destination The array the results are written into. May be the source.
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param radius The radius of the blur in pixels. The averaged square is 
+	 * 2 * radius + 1 pixels wide.
+	 * @param edgeMode How the pixels outside the image are treated
+	 */
+	public static void boxBlur(int[] source, int[] destination, int width, int height, 
+			int radius, EdgeMode edgeMode)
+	{
+		int blurRadius = Math.max(0, radius);
+		double diameter = 2 * blurRadius + 1;
+		int[] pixels = borrowSource(source, destination, width * height);
+		try
+		{
+			// The rows are averaged horizontally when they're read. The window also keeps 
+			// the row that leaves the vertical sums.
+			Rows rows = new Rows(pixels, width, height, 2 * blurRadius + 2, edgeMode, true, 
+					(channels, results) -> sumLine(channels, results, width, blurRadius, 
+					edgeMode));
+			double[] sums = new double[width * 4];
+			for (int y = -blurRadius; y <= blurRadius; y++)
+			{
+				addRow(sums, rows.get(y), 1);
+			}
+			
+			float[] results = new float[width * 4];
+			for (int y = 0; y < height; y++)
+			{
+				for (int i = 0; i < results.length; i++)
+				{
+					results[i] = (float) (sums[i] / diameter);
+				}
+				writeRow(results, pixels, destination, y, width, height, blurRadius, 
+						blurRadius, edgeMode, true);
+				
+				// The window moves one row down
+				addRow(sums, rows.get(y - blurRadius), -1);
+				addRow(sums, rows.get(y + blurRadius + 1), 1);
+			}
+		}
+		finally
+		{
+			returnSource(source, pixels);
+		}
+	}
+	
+	// When the image is convolved in place, the source pixels are copied into a buffer 
+	// borrowed from the filter chain's pool, since they're still read after the rows above 
+	// have been written
+	private static int[] borrowSource(int[] source, int[] destination, int amount)
+	{
+		if (source != destination)
+			return source;
+		
+		int[] pixels = FilterChain.acquirePixels(amount);
+		System.arraycopy(source, 0, pixels, 0, amount);
+		return pixels;
+	}
+	
+	private static void returnSource(int[] source, int[] pixels)
+	{
+		if (pixels != source)
+			FilterChain.releasePixels(pixels);
+	}
+	
+	// Applies a one dimensional kernel along a row
+	private static void convolveLine(float[] channels, float[] results, int length, 
+			float[] kernel, EdgeMode edgeMode)
+	{
+		int radius = kernel.length / 2;
+		for (int i = 0; i < length; i++)
+		{
+			// Pixels further than the radius from the edges don't need to be checked
+			boolean isInside = i >= radius && i + radius < length;
+			float alpha = 0, red = 0, green = 0, blue = 0;
+			for (int k = 0; k < kernel.length; k++)
+			{
+				int position = isInside ? i + k - radius : 
+						sampleIndex(i + k - radius, length, edgeMode);
+				if (position < 0)
+					continue;
+				
+				int index = position * 4;
+				float weight = kernel[k];
+				alpha += channels[index] * weight;
+				red += channels[index + 1] * weight;
+				green += channels[index + 2] * weight;
+				blue += channels[index + 3] * weight;
+			}
+			
+			int index = i * 4;
+			results[index] = alpha;
+			results[index + 1] = red;
+			results[index + 2] = green;
+			results[index + 3] = blue;
+		}
+	}
+	
+	// Averages the pixels around each pixel along a row using a running sum
+	private static void sumLine(float[] channels, float[] results, int length, int radius, 
+			EdgeMode edgeMode)
+	{
+		double diameter = 2 * radius + 1;
+		double alpha = 0, red = 0, green = 0, blue = 0;
+		for (int i = -radius; i <= radius; i++)
+		{
+			int position = sampleIndex(i, length, edgeMode);
+			if (position >= 0)
+			{
+				alpha += channels[position * 4];
+				red += channels[position * 4 + 1];
+				green += channels[position * 4 + 2];
+				blue += channels[position * 4 + 3];
+			}
+		}
+		
+		for (int i = 0; i < length; i++)
+		{
+			int index = i * 4;
+			results[index] = (float) (alpha / diameter);
+			results[index + 1] = (float) (red / diameter);
+			results[index + 2] = (float) (green / diameter);
+			results[index + 3] = (float) (blue / diameter);
+			
+			// The window moves one pixel forward
+			int leaving = sampleIndex(i - radius, length, edgeMode);
+			if (leaving >= 0)
+			{
+				alpha -= channels[leaving * 4];
+				red -= channels[leaving * 4 + 1];
+				green -= channels[leaving * 4 + 2];
+				blue -= channels[leaving * 4 + 3];
+			}
+			int entering = sampleIndex(i + radius + 1, length, edgeMode);
+			if (entering >= 0)
+			{
+				alpha += channels[entering * 4];
+				red += channels[entering * 4 + 1];
+				green += channels[entering * 4 + 2];
+				blue += channels[entering * 4 + 3];
+			}
+		}
+	}
+	
+	private static void addRow(double[] sums, float[] channels, int sign)
+	{
+		if (channels == null)
+			return;
+		
+		for (int i = 0; i < sums.length; i++)
+		{
+			sums[i] += sign * channels[i];
+		}
+	}
+	
+	// The index of the pixel sampled at a position. -1 if the sample is transparent.
+	private static int sampleIndex(int position, int length, EdgeMode edgeMode)
+	{
+		if (position >= 0 && position < length)
+			return position;
+		
+		switch (edgeMode)
+		{
+			case ZERO: return -1;
+			case WRAP: return Math.floorMod(position, length);
+			// The edges of the no-op mode are replaced afterwards
+			default: return position < 0 ? 0 : length - 1;
+		}
+	}
+	
+	// Converts a row of pixels into channels in order alpha, red, green, blue
+	private static void toChannels(int[] pixels, int offset, int amount, float[] channels, 
+			boolean premultiply)
+	{
+		for (int i = 0; i < amount; i++)
+		{
+			int pixel = pixels[offset + i];
+			float alpha = pixel >>> 24;
+			float scale = premultiply ? alpha / 255f : 1;
+			channels[i * 4] = alpha;
+			channels[i * 4 + 1] = ((pixel >> 16) & 0xFF) * scale;
+			channels[i * 4 + 2] = ((pixel >> 8) & 0xFF) * scale;
+			channels[i * 4 + 3] = (pixel & 0xFF) * scale;
+		}
+	}
+	
+	// Writes a row of results. The source is never the destination here.
+	private static void writeRow(float[] channels, int[] source, int[] destination, int y, 
+			int width, int height, int radiusX, int radiusY, EdgeMode edgeMode, 
+			boolean premultiplied)
+	{
+		int start = y * width;
+		
+		// In the no-op mode, the pixels that can't be fully convolved are copied from the source
+		int minX = 0, maxX = width;
+		if (edgeMode == EdgeMode.NO_OP)
+		{
+			int minY = Math.min(radiusY, height);
+			int maxY = Math.max(minY, height - radiusY);
+			if (y < minY || y >= maxY)
+			{
+				System.arraycopy(source, start, destination, start, width);
+				return;
+			}
+			
+			minX = Math.min(radiusX, width);
+			maxX = Math.max(minX, width - radiusX);
+			System.arraycopy(source, start, destination, start, minX);
+			System.arraycopy(source, start + maxX, destination, start + maxX, width - maxX);
+		}
+		
+		for (int x = minX; x < maxX; x++)
+		{
+			float alpha = channels[x * 4];
+			int a = clamp(alpha);
+			if (premultiplied && a == 0)
+				destination[start + x] = 0;
+			else
+			{
+				float scale = premultiplied ? 255f / alpha : 1;
+				destination[start + x] = a << 24 | clamp(channels[x * 4 + 1] * scale) << 16 |
+						clamp(channels[x * 4 + 2] * scale) << 8 |
+						clamp(channels[x * 4 + 3] * scale);
+			}
+		}
+	}
+	
+	private static int clamp(float value)
+	{
+		int rounded = Math.round(value);
+		return rounded < 0 ? 0 : (rounded > 255 ? 255 : rounded);
+	}
+	
+	
+	// INTERFACES	-----------------
+	
+	// Processes a row of channels when it is read
+	private static interface RowPass
+	{
+		public void apply(float[] channels, float[] results);
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	// Keeps the channels of the latest rows, so that only the rows under a kernel are held 
+	// in memory instead of the whole image. Each row is converted only once while the window 
+	// moves down the image.
+	private static class Rows
+	{
+		// ATTRIBUTES	-------------
+		
+		private int[] pixels;
+		private int width, height;
+		private EdgeMode edgeMode;
+		private boolean premultiply;
+		private RowPass pass;
+		
+		private float[][] rows;
+		private float[] channels = null;
+		// The (unmapped) position held in each slot and whether that position is transparent
+		private int[] positions;
+		private boolean[] transparent;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public Rows(int[] pixels, int width, int height, int amount, EdgeMode edgeMode, 
+				boolean premultiply)
+		{
+			this(pixels, width, height, amount, edgeMode, premultiply, null);
+		}
+		
+		public Rows(int[] pixels, int width, int height, int amount, EdgeMode edgeMode, 
+				boolean premultiply, RowPass pass)
+		{
+			this.pixels = pixels;
+			this.width = width;
+			this.height = height;
+			this.edgeMode = edgeMode;
+			this.premultiply = premultiply;
+			this.pass = pass;
+			
+			this.rows = new float[amount][width * 4];
+			this.positions = new int[amount];
+			Arrays.fill(this.positions, Integer.MIN_VALUE);
+			this.transparent = new boolean[amount];
+			if (pass != null)
+				this.channels = new float[width * 4];
+		}
+		
+		
+		// OTHER METHODS	---------
+		
+		// The channels of a row. Null if the row is transparent. The consecutive positions 
+		// occupy different slots, so the rows of a window never replace each other.
+		public float[] get(int position)
+		{
+			int slot = Math.floorMod(position, this.rows.length);
+			if (this.positions[slot] != position)
+			{
+				this.positions[slot] = position;
+				int row = sampleIndex(position, this.height, this.edgeMode);
+				this.transparent[slot] = row < 0;
+				if (row >= 0)
+				{
+					if (this.pass == null)
+						toChannels(this.pixels, row * this.width, this.width, this.rows[slot], 
+								this.premultiply);
+					else
+					{
+						toChannels(this.pixels, row * this.width, this.width, this.channels, 
+								this.premultiply);
+						this.pass.apply(this.channels, this.rows[slot]);
+					}
+				}
+			}
+			
+			return this.transparent[slot] ? null : this.rows[slot];
+		}
+	}
+	
+	
+	// ENUMERATIONS	-----------------
+	
+	/**
+	 * The edge modes define how the pixels outside the image are treated
+	 * @author Mikko Hilpinen
+	 * @since 16.10.2026
+	 */
+	public static enum EdgeMode
+	{
+		/**
+		 * The pixels outside the image are fully transparent
+		 */
+		ZERO,
+		/**
+		 * The pixels outside the image have the colour of the closest edge pixel
+		 */
+		CLAMP,
+		/**
+		 * The image repeats outside its edges
+		 */
+		WRAP,
+		/**
+		 * The pixels too close to the edges to be fully convolved are left as they are, like 
+		 * with {@link java.awt.image.ConvolveOp#EDGE_NO_OP}
+		 */
+		NO_OP;
+	}
+}
@@ -0,0 +1,513 @@
+package utopia.vision.filter;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import utopia.vision.util.ImageBufferPool;
+
+/**
+ * A filter chain applies multiple filters in order. The chain is compiled when it is created: 
+ * the lookup tables of consecutive lookup table filters are combined into a single table and 
+ * consecutive {@link PixelFilter}s are applied in a single pass over the image, so a chain 
+ * of pixel filters reads the image once and creates only one new image. Other filters are 
+ * applied separately. The pixel buffers are borrowed from a shared pool of limited size, so 
+ * the chain can be used by multiple threads at the same time. The images between the stages 
+ * are borrowed from the {@link ImageBufferPool} and filtered in place where possible.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class FilterChain implements ImageFilter
+{
+	// ATTRIBUTES	-----------------
+	
+	// At most this many pixels are held in the pooled pixel buffers (16 MB)
+	private static final long MAX_POOLED_PIXELS = 4 * 1024 * 1024;
+	
+	private static final Deque<int[]> PIXEL_BUFFERS = new ArrayDeque<>();
+	private static long pooledPixels = 0;
+	
+	private List<ImageFilter> filters;
+	private List<ImageFilter> stages = new ArrayList<>();
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new filter chain
+	 * @param filters The filters in the order they are applied
+	 */
+	public FilterChain(List<? extends ImageFilter> filters)
+	{
+		this.filters = new ArrayList<>(filters);
+		
+		List<PixelFilter> pass = new ArrayList<>();
+		short[][] tables = null;
+		
+		for (ImageFilter filter : filters)
+		{
+			if (filter instanceof PixelFilter)
+			{
+				PixelFilter pixelFilter = (PixelFilter) filter;
+				short[][] filterTables = pixelFilter.getLookupTables();
+				
+				// Lookup tables are combined until some other filter comes in between
+				if (filterTables != null)
+					tables = tables == null ? filterTables : combineTables(tables, filterTables);
+				else
+				{
+					if (tables != null)
+						pass.add(new TableFilter(tables));
+					tables = null;
+					pass.add(pixelFilter);
+				}
+			}
+			else
+			{
+				endPass(pass, tables);
+				tables = null;
+				pass = new ArrayList<>();
+				this.stages.add(filter);
+			}
+		}
+		
+		endPass(pass, tables);
+	}
+	
+	
+	// IMPLEMENTED METHODS	---------
+	
+	@Override
+	public BufferedImage filter(BufferedImage image)
+	{
+		return filter(image, null);
+	}
+	
+	@Override
+	public BufferedImage filter(BufferedImage source, BufferedImage destination)
+	{
+		// An empty chain only copies the image
+		if (this.stages.isEmpty())
+		{
+			if (destination == source || !fits(destination, source, source.getType()))
+				return source;
+			destination.getRaster().setRect(source.getRaster());
+			return destination;
+		}
+		
+		BufferedImage filtered = source;
+		for (int i = 0; i < this.stages.size(); i++)
+		{
+			ImageFilter stage = this.stages.get(i);
+			boolean isLast = i == this.stages.size() - 1;
+			// The source image is never modified, but the images created by the previous 
+			// stages may be filtered in place
+			boolean canOverwrite = filtered != source && stage.supportsInPlace();
+			
+			BufferedImage target;
+			if (isLast)
+				target = destination == filtered && !stage.supportsInPlace() ? null : destination;
+			else if (canOverwrite)
+				target = filtered;
+			else
+				target = ImageBufferPool.acquire(source.getWidth(), source.getHeight());
+			
+			BufferedImage result = stage.filter(filtered, target);
+			
+			// Images that are no longer used are returned to the pool
+			if (!isLast && target != filtered && target != result)
+				ImageBufferPool.release(target);
+			if (filtered != source && filtered != result)
+				ImageBufferPool.release(filtered);
+			filtered = result;
+		}
+		
+		return filtered;
+	}
+	
+	@Override
+	public boolean supportsInPlace()
+	{
+		// When there are multiple stages, the last stage reads an intermediate image
+		return this.stages.size() != 1 || this.stages.get(0).supportsInPlace();
+	}
+	
+	@Override
+	public int getSampleRadius()
+	{
+		// The areas read by the consecutive filters add up
+		int radius = 0;
+		for (ImageFilter stage : this.stages)
+		{
+			int stageRadius = stage.getSampleRadius();
+			if (stageRadius < 0)
+				return -1;
+			radius += stageRadius;
+		}
+		
+		return radius;
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return this.filters.hashCode();
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof FilterChain))
+			return false;
+		
+		// Chains are equal when they apply equal filters in the same order
+		return this.filters.equals(((FilterChain) obj).filters);
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return How many separate passes over the image the chain makes
+	 */
+	public int getPassAmount()
+	{
+		return this.stages.size();
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Applies lookup tables to a pixel
+	 * @param tables The lookup tables in order red, green, blue, alpha
+	 * @param argb A pixel in ARGB format
+	 * @return The pixel after the tables were applied
+	 */
+	static int applyTables(short[][] tables, int argb)
+	{
+		return tables[3][argb >>> 24] << 24 | tables[0][(argb >> 16) & 0xFF] << 16 | 
+				tables[1][(argb >> 8) & 0xFF] << 8 | tables[2][argb & 0xFF];
+	}
+	
+	/**
+	 * Checks whether a filter result can be written into a destination image
+	 * @param destination The proposed destination image. May be null.
+	 * @param source The image that is filtered
+	 * @param type The image type the filter requires
+	 * @return Whether the destination has the same size as the source and the required type
+	 */
+	static boolean fits(BufferedImage destination, BufferedImage source, int type)
+	{
+		// Custom images may have any kind of layout, so they can't be written into directly
+		return destination != null && type != BufferedImage.TYPE_CUSTOM && 
+				destination.getType() == type && destination.getWidth() == source.getWidth() && 
+				destination.getHeight() == source.getHeight();
+	}
+	
+	/**
+	 * Reads the pixels of an image in ARGB format
+	 * @param image The image that is read
+	 * @param pixels The array the pixels are read into. A new array is created if this one 
+	 * is null or too small.
+	 * @return The array containing the pixels, one row after another
+	 */
+	static int[] readPixels(BufferedImage image, int[] pixels)
+	{
+		int width = image.getWidth();
+		int height = image.getHeight();
+		if (pixels == null || pixels.length < width * height)
+			pixels = new int[width * height];
+		
+		// ARGB images can be copied without converting each pixel separately
+		if (image.getType() == BufferedImage.TYPE_INT_ARGB)
+			image.getRaster().getDataElements(0, 0, width, height, pixels);
+		else
+			image.getRGB(0, 0, width, height, pixels, 0, width);
+		
+		return pixels;
+	}
+	
+	/**
+	 * Creates a new ARGB image
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param pixels The pixels of the image in ARGB format, one row after another
+	 * @return A new image
+	 */
+	static BufferedImage createImage(int width, int height, int[] pixels)
+	{
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		image.getRaster().setDataElements(0, 0, width, height, pixels);
+		return image;
+	}
+	
+	/**
+	 * Writes filtered pixels into the destination image, if it fits, or into a new ARGB image
+	 * @param destination The proposed destination image. May be null.
+	 * @param source The image that was filtered
+	 * @param pixels The filtered pixels in ARGB format, one row after another
+	 * @return The image containing the pixels. Either the destination or a new image.
+	 */
+	static BufferedImage writePixels(BufferedImage destination, BufferedImage source, 
+			int[] pixels)
+	{
+		if (!fits(destination, source, BufferedImage.TYPE_INT_ARGB))
+			return createImage(source.getWidth(), source.getHeight(), pixels);
+		
+		destination.getRaster().setDataElements(0, 0, source.getWidth(), source.getHeight(), 
+				pixels);
+		return destination;
+	}
+	
+	/**
+	 * Borrows a pixel buffer from the shared pool. The buffer should be returned with 
+	 * {@link #releasePixels(int[])} once it is no longer used.
+	 * @param size The minimum length of the buffer
+	 * @return A buffer of at least the requested length. The contents are undefined.
+	 */
+	static int[] acquirePixels(int size)
+	{
+		synchronized (PIXEL_BUFFERS)
+		{
+			Iterator<int[]> iterator = PIXEL_BUFFERS.iterator();
+			while (iterator.hasNext())
+			{
+				int[] buffer = iterator.next();
+				if (buffer.length >= size)
+				{
+					iterator.remove();
+					pooledPixels -= buffer.length;
+					return buffer;
+				}
+			}
+		}
+		
+		return new int[size];
+	}
+	
+	/**
+	 * Returns a pixel buffer to the shared pool. The buffer is discarded if the pool is full.
+	 * @param buffer The buffer that is no longer used
+	 */
+	static void releasePixels(int[] buffer)
+	{
+		synchronized (PIXEL_BUFFERS)
+		{
+			// The most recently used buffers are found first
+			if (pooledPixels + buffer.length <= MAX_POOLED_PIXELS)
+			{
+				PIXEL_BUFFERS.addFirst(buffer);
+				pooledPixels += buffer.length;
+			}
+		}
+	}
+	
+	private void endPass(List<PixelFilter> pass, short[][] tables)
+	{
+		if (tables != null)
+			pass.add(new TableFilter(tables));
+		if (!pass.isEmpty())
+			this.stages.add(new PixelPass(pass.toArray(new PixelFilter[pass.size()])));
+	}
+	
+	private static short[][] combineTables(short[][] first, short[][] second)
+	{
+		short[][] combined = new short[4][256];
+		for (int channel = 0; channel < 4; channel++)
+		{
+			for (int i = 0; i < 256; i++)
+			{
+				combined[channel][i] = second[channel][first[channel][i]];
+			}
+		}
+		
+		return combined;
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	// Applies multiple pixel filters in a single pass
+	private static class PixelPass implements ImageFilter
+	{
+		// ATTRIBUTES	-------------
+		
+		private static final int COLOUR_CACHE_BITS = 10;
+		
+		private PixelFilter[] filters;
+		private boolean colourCacheUsed = false;
+		// Each thread borrows a cache while filtering, so that the pass can be used by 
+		// multiple threads at the same time
+		private Queue<ColourCache> colourCaches = new ConcurrentLinkedQueue<>();
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public PixelPass(PixelFilter[] filters)
+		{
+			this.filters = filters;
+			
+			// Table lookups are about as fast as the colour cache, other filters are slower
+			for (PixelFilter filter : filters)
+			{
+				if (!(filter instanceof TableFilter))
+					this.colourCacheUsed = true;
+			}
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public BufferedImage filter(BufferedImage image)
+		{
+			return filter(image, null);
+		}
+		
+		@Override
+		public BufferedImage filter(BufferedImage image, BufferedImage destination)
+		{
+			int width = image.getWidth();
+			int height = image.getHeight();
+			ColourCache cache = acquireColourCache();
+			// The pixels are read before anything is written, so the pass works in place
+			int[] pixels = readPixels(image, acquirePixels(width * height));
+			
+			try
+			{
+				// Runs of the same colour are only filtered once
+				int lastPixel = 0;
+				int lastFiltered = filterPixel(lastPixel);
+				for (int i = 0; i < width * height; i++)
+				{
+					if (pixels[i] != lastPixel)
+					{
+						lastPixel = pixels[i];
+						lastFiltered = cache == null ? filterPixel(lastPixel) : 
+								findResult(cache, lastPixel);
+					}
+					pixels[i] = lastFiltered;
+				}
+				
+				return writePixels(destination, image, pixels);
+			}
+			finally
+			{
+				releasePixels(pixels);
+				if (cache != null)
+					this.colourCaches.offer(cache);
+			}
+		}
+		
+		@Override
+		public int getSampleRadius()
+		{
+			return 0;
+		}
+		
+		@Override
+		public boolean supportsInPlace()
+		{
+			return true;
+		}
+		
+		
+		// OTHER METHODS	---------
+		
+		// There are never more caches than threads filtering at the same time
+		private ColourCache acquireColourCache()
+		{
+			if (!this.colourCacheUsed)
+				return null;
+			
+			ColourCache cache = this.colourCaches.poll();
+			if (cache == null)
+			{
+				// The cache starts filled with the result of colour 0
+				cache = new ColourCache();
+				Arrays.fill(cache.results, filterPixel(0));
+			}
+			
+			return cache;
+		}
+		
+		private int findResult(ColourCache cache, int argb)
+		{
+			int index = (argb * 0x9E3779B1) >>> (32 - COLOUR_CACHE_BITS);
+			if (cache.colours[index] != argb)
+			{
+				cache.colours[index] = argb;
+				cache.results[index] = filterPixel(argb);
+			}
+			
+			return cache.results[index];
+		}
+		
+		private int filterPixel(int argb)
+		{
+			int pixel = argb;
+			for (PixelFilter filter : this.filters)
+			{
+				pixel = filter.filterPixel(pixel);
+			}
+			
+			return pixel;
+		}
+	}
+	
+	// The colour cache used by a single thread at a time. Sprites use a limited amount of 
+	// colours, so the results of the more expensive filters are cached by colour.
+	private static class ColourCache
+	{
+		// ATTRIBUTES	-------------
+		
+		private int[] colours = new int[1 << PixelPass.COLOUR_CACHE_BITS];
+		private int[] results = new int[1 << PixelPass.COLOUR_CACHE_BITS];
+	}
+	
+	// Applies a combined set of lookup tables
+	private static class TableFilter implements PixelFilter
+	{
+		// ATTRIBUTES	-------------
+		
+		private short[][] tables;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public TableFilter(short[][] tables)
+		{
+			this.tables = tables;
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public BufferedImage filter(BufferedImage image)
+		{
+			return new PixelPass(new PixelFilter[] {this}).filter(image);
+		}
+		
+		@Override
+		public int filterPixel(int argb)
+		{
+			return applyTables(this.tables, argb);
+		}
+		
+		@Override
+		public short[][] getLookupTables()
+		{
+			return this.tables;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package utopia.vision.filter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import utopia.vision.util.ImageBufferPool;
+
+/**
+ * The filter executor applies filters using multiple threads. Large images are split into 
+ * horizontal bands that are filtered separately. The bands overlap by the sample radius of 
+ * the filter so that the result is the same as when the image is filtered as a whole. When 
+ * multiple images are filtered, each image is filtered on its own thread as well. Images 
+ * smaller than the parallelism threshold are filtered on the calling thread.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class FilterExecutor
+{
+	// ATTRIBUTES	-----------------
+	
+	/**
+	 * The default amount of pixels that needs to be filtered before multiple threads are used
+	 */
+	public static final long DEFAULT_PARALLELISM_THRESHOLD = 256 * 256;
+	
+	private static volatile long parallelismThreshold = DEFAULT_PARALLELISM_THRESHOLD;
+	private static volatile ForkJoinPool pool = null;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private FilterExecutor()
+	{
+		// Static interface
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return The amount of pixels that needs to be filtered before multiple threads are used
+	 */
+	public static long getParallelismThreshold()
+	{
+		return parallelismThreshold;
+	}
+	
+	/**
+	 * Changes the amount of pixels that needs to be filtered before multiple threads are used. 
+	 * Smaller amounts are filtered faster on a single thread.
+	 * @param pixels The new threshold in pixels. Use Long.MAX_VALUE to always filter on the 
+	 * calling thread.
+	 */
+	public static void setParallelismThreshold(long pixels)
+	{
+		parallelismThreshold = pixels;
+	}
+	
+	/**
+	 * @return The pool that runs the filters
+	 */
+	public static ForkJoinPool getPool()
+	{
+		ForkJoinPool pool = FilterExecutor.pool;
+		return pool == null ? ForkJoinPool.commonPool() : pool;
+	}
+	
+	/**
+	 * Changes the pool that runs the filters
+	 * @param pool The new pool. Null for the common pool.
+	 */
+	public static void setPool(ForkJoinPool pool)
+	{
+		FilterExecutor.pool = pool;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Applies a filter to an image. Large images are split into bands, which are filtered 
+	 * in parallel.
+	 * @param filter The filter that is applied
+	 * @param image The filtered image
+	 * @return The filtered image
+	 */
+	public static BufferedImage filter(ImageFilter filter, BufferedImage image)
+	{
+		return filter(filter, image, null);
+	}
+	
+	/**
+	 * Applies a filter to an image, writing the result into an existing image when possible. 
+	 * Large images are split into bands, which are filtered in parallel.
+	 * @param filter The filter that is applied
+	 * @param image The filtered image
+	 * @param destination The image the result is written into. May be null.
+	 * @return The filtered image. Either the destination or a new image.
+	 * @see ImageFilter#filter(BufferedImage, BufferedImage)
+	 */
+	public static BufferedImage filter(ImageFilter filter, BufferedImage image, 
+			BufferedImage destination)
+	{
+		int radius = filter.getSampleRadius();
+		long pixels = (long) image.getWidth() * image.getHeight();
+		if (radius < 0 || !isParallel(pixels))
+			return filter.filter(image, destination);
+		
+		// The image is split into a couple of bands for each thread, but the bands can't be
+		// too small either
+		int height = image.getHeight();
+		long bandPixels = Math.max(1, getParallelismThreshold() / 4);
+		int bandAmount = (int) Math.min(Math.min(height, getPool().getParallelism() * 4L), 
+				Math.max(1, pixels / bandPixels));
+		if (bandAmount < 2)
+			return filter.filter(image, destination);
+		
+		List<ForkJoinTask<BufferedImage>> tasks = new ArrayList<>(bandAmount);
+		BufferedImage[] bandBuffers = new BufferedImage[bandAmount];
+		int[] bandStarts = new int[bandAmount + 1];
+		for (int i = 0; i <= bandAmount; i++)
+		{
+			bandStarts[i] = (int) ((long) height * i / bandAmount);
+		}
+		for (int i = 0; i < bandAmount; i++)
+		{
+			// Each band also contains the pixels the filter reads around it
+			int top = Math.max(0, bandStarts[i] - radius);
+			int bottom = Math.min(height, bandStarts[i + 1] + radius);
+			BufferedImage bandBuffer = ImageBufferPool.acquire(image.getWidth(), bottom - top);
+			bandBuffers[i] = bandBuffer;
+			tasks.add(ForkJoinTask.adapt(() -> filter.filter( 
+					image.getSubimage(0, top, image.getWidth(), bottom - top), bandBuffer)));
+		}
+		run(tasks);
+		
+		// Combines the bands, leaving out the overlapping parts. The source is no longer read 
+		// at this point, so the destination may be the source as well.
+		BufferedImage firstBand = tasks.get(0).join();
+		ColorModel colorModel = firstBand.getColorModel();
+		BufferedImage combined = null;
+		WritableRaster raster;
+		if (FilterChain.fits(destination, image, firstBand.getType()))
+		{
+			combined = destination;
+			raster = destination.getRaster();
+		}
+		else
+			raster = colorModel.createCompatibleWritableRaster(image.getWidth(), height);
+		for (int i = 0; i < bandAmount; i++)
+		{
+			int top = Math.max(0, bandStarts[i] - radius);
+			Raster band = tasks.get(i).join().getRaster().createChild(0, bandStarts[i] - top, 
+					image.getWidth(), bandStarts[i + 1] - bandStarts[i], 0, 0, null);
+			raster.setRect(0, bandStarts[i], band);
+		}
+		
+		for (BufferedImage bandBuffer : bandBuffers)
+		{
+			ImageBufferPool.release(bandBuffer);
+		}
+		
+		if (combined == null)
+			combined = new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), 
+					null);
+		return combined;
+	}
+	
+	/**
+	 * Applies a filter to multiple images. The images are filtered in parallel.
+	 * @param filter The filter that is applied
+	 * @param images The filtered images
+	 * @return The filtered images in the same order
+	 */
+	public static BufferedImage[] filter(ImageFilter filter, BufferedImage[] images)
+	{
+		return filter(filter, images, null);
+	}
+	
+	/**
+	 * Applies a filter to multiple images, writing the results into existing images when 
+	 * possible. The images are filtered in parallel.
+	 * @param filter The filter that is applied
+	 * @param images The filtered images
+	 * @param destinations The images the results are written into, in the same order as the 
+	 * filtered images. Null if new images should be created. May contain null values.
+	 * @return The filtered images in the same order
+	 * @see #filter(ImageFilter, BufferedImage, BufferedImage)
+	 */
+	public static BufferedImage[] filter(ImageFilter filter, BufferedImage[] images, 
+			BufferedImage[] destinations)
+	{
+		BufferedImage[] filtered = new BufferedImage[images.length];
+		
+		long pixels = 0;
+		for (BufferedImage image : images)
+		{
+			pixels += (long) image.getWidth() * image.getHeight();
+		}
+		
+		if (images.length < 2 || !isParallel(pixels))
+		{
+			for (int i = 0; i < images.length; i++)
+			{
+				filtered[i] = filter(filter, images[i], 
+						destinations == null ? null : destinations[i]);
+			}
+		}
+		else
+		{
+			// Large images are further split into bands
+			List<ForkJoinTask<?>> tasks = new ArrayList<>(images.length);
+			for (int i = 0; i < images.length; i++)
+			{
+				int index = i;
+				tasks.add(ForkJoinTask.adapt(() -> filtered[index] = filter(filter, 
+						images[index], destinations == null ? null : destinations[index])));
+			}
+			run(tasks);
+		}
+		
+		return filtered;
+	}
+	
+	private static boolean isParallel(long pixels)
+	{
+		return pixels >= getParallelismThreshold() && getPool().getParallelism() > 1;
+	}
+	
+	private static void run(List<? extends ForkJoinTask<?>> tasks)
+	{
+		// Tasks started from inside the pool are run by the same pool
+		if (ForkJoinTask.inForkJoinPool())
+			ForkJoinTask.invokeAll(tasks);
+		else
+			getPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+	}
+}
@@ -3,6 +3,7 @@ package utopia.vision.filter;
 import java.awt.image.BufferedImage;
 import java.awt.image.LookupOp;
 import java.awt.image.ShortLookupTable;
+import java.util.Arrays;
 
 /**
  * A function filter applies a function over each pixel in an image, increasing or decreasing 
@@ -11,10 +12,11 @@ import java.awt.image.ShortLookupTable;
  * @author Mikko Hilpinen
  * @since 20.6.2016
  */
-public class FunctionFilter implements ImageFilter
+public class FunctionFilter implements PixelFilter
 {
 	// ATTRIBUTES	----------------
 	
+	private short[][] tables;
 	private LookupOp operation;
 	
 	
@@ -26,7 +28,7 @@ public class FunctionFilter implements ImageFilter
 	 */
 	public FunctionFilter(Function function)
 	{
-		this.operation = createOperation(function, function, function, null);
+		this(function, function, function, null);
 	}
 	
 	/**
@@ -37,7 +39,7 @@ public class FunctionFilter implements ImageFilter
 	 */
 	public FunctionFilter(Function redFunction, Function greenFunction, Function blueFunction)
 	{
-		this.operation = createOperation(redFunction, greenFunction, blueFunction, null);
+		this(redFunction, greenFunction, blueFunction, null);
 	}
 	
 	/**
@@ -50,8 +52,8 @@ public class FunctionFilter implements ImageFilter
 	public FunctionFilter(Function redFunction, Function greenFunction, Function blueFunction, 
 			Function alphaFunction)
 	{
-		this.operation = createOperation(redFunction, greenFunction, blueFunction, 
-				alphaFunction);
+		this.tables = createTables(redFunction, greenFunction, blueFunction, alphaFunction);
+		this.operation = new LookupOp(new ShortLookupTable(0, this.tables), null);
 	}
 	
 	/**
@@ -81,10 +83,50 @@ public class FunctionFilter implements ImageFilter
 		return this.operation.filter(image, destinationImage);
 	}
 	
+	@Override
+	public BufferedImage filter(BufferedImage source, BufferedImage destination)
+	{
+		// The lookup operation can be applied in place
+		if (FilterChain.fits(destination, source, BufferedImage.TYPE_INT_ARGB))
+			return this.operation.filter(source, destination);
+		else
+			return filter(source);
+	}
+	
+	@Override
+	public int filterPixel(int argb)
+	{
+		return FilterChain.applyTables(this.tables, argb);
+	}
+	
+	@Override
+	public short[][] getLookupTables()
+	{
+		return this.tables;
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return Arrays.deepHashCode(this.tables);
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof FunctionFilter))
+			return false;
+		
+		// Filters with the same tables produce the same results
+		return Arrays.deepEquals(this.tables, ((FunctionFilter) obj).tables);
+	}
+	
 	
 	// OTHER METHODS	------------
 	
-	private static LookupOp createOperation(Function rFunction, Function gFunction, 
+	private static short[][] createTables(Function rFunction, Function gFunction, 
 			Function bFunction, Function alphaFunction)
 	{
 		short[] red = new short[256];
@@ -100,9 +142,7 @@ public class FunctionFilter implements ImageFilter
 			alpha[i] = getFunctionValue(alphaFunction, i);
 		}
 		
-		short[][] data = new short[][] {red, green, blue, alpha};
-		
-		return new LookupOp(new ShortLookupTable(0, data), null);
+		return new short[][] {red, green, blue, alpha};
 	}
 	
 	private static short getFunctionValue(Function f, short i)
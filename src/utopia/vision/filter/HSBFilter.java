@@ -2,6 +2,8 @@ package utopia.vision.filter;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * HSV filters can be used for altering image hue and saturation. Some parts of the code 
@@ -10,13 +12,15 @@ import java.awt.image.BufferedImage;
  * @author Mikko Hilpinen
  * @since 21.6.2016
  */
-public class HSBFilter implements ImageFilter
+public class HSBFilter implements PixelFilter
 {
 	// ATTRIBUTES	----------------
 	
 	private double hueAdjustment;
 	private double saturationAdjustment;
 	private ColourTarget target = null;
+	// The chain is compiled only once. It is used for filtering whole images.
+	private volatile FilterChain chain = null;
 	
 	
 	// CONSTRUCTOR	----------------
@@ -51,64 +55,107 @@ public class HSBFilter implements ImageFilter
 	@Override
 	public BufferedImage filter(BufferedImage image)
 	{
-		// Reads the image into a pixel array
-		int[] pixels = new int[image.getWidth() * image.getHeight()];
-        image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
-        
-        // Alters the pixels
-		for(int i = 0; i < pixels.length; i++)
-		{
-            int pixel = pixels[i];
-            int red = Colors.red(pixel);
-            int green = Colors.green(pixel);
-            int blue = Colors.blue(pixel);
-            int alpha = Colors.alpha(pixel);
+		// The filter chain reads the pixels efficiently and filters each colour only once
+		return filter(image, null);
+	}
 
-            double effectModifier = 1;
-            if (this.target != null)
-            	effectModifier = this.target.getEffectModifier(red, green, blue);
-            
-            if (effectModifier > 0)
-            {
-	            float[] hsb = new float[3];
-	            Color.RGBtoHSB(red, green, blue, hsb);
-	            
-	            
-	            if (this.hueAdjustment != 0)
-	            {
-	            	hsb[0] += this.hueAdjustment * effectModifier;
-	            	if (hsb[0] > 1)
-	            		hsb[0] -= 1;
-	            	else if (hsb[0] < 0)
-	            		hsb[0] += 1;
-	            }
-	            if (this.saturationAdjustment != 0)
-	            {
-		            hsb[1] += this.saturationAdjustment * effectModifier;
-		            if(hsb[1] > 1)
-		                hsb[1] = 1;
-		            else if(hsb[1] < 0)
-		                hsb[1] = 0;
-	            }
+	@Override
+	public BufferedImage filter(BufferedImage source, BufferedImage destination)
+	{
+		FilterChain chain = this.chain;
+		if (chain == null)
+		{
+			chain = new FilterChain(Arrays.asList(this));
+			this.chain = chain;
+		}
+		
+		return chain.filter(source, destination);
+	}
 	
-	            int newpixel = Color.HSBtoRGB(hsb[0], hsb[1], hsb[2]);
-	            red = Colors.red(newpixel);
-	            green = Colors.green(newpixel);
-	            blue = Colors.blue(newpixel);
-	            
-	            pixels[i] = Colors.rgba(red, green, blue, alpha);
-            }
-            else
-            	pixels[i] = pixel;
-            
-        }
-		
-		BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(), 
-				BufferedImage.TYPE_INT_ARGB);
-		newImage.setRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
-		return newImage;
+	@Override
+	public int filterPixel(int pixel)
+	{
+		int red = Colors.red(pixel);
+		int green = Colors.green(pixel);
+		int blue = Colors.blue(pixel);
+		int alpha = Colors.alpha(pixel);
+		
+		double effectModifier = 1;
+		if (this.target != null)
+			effectModifier = this.target.getEffectModifier(red, green, blue);
+		
+		if (effectModifier > 0)
+		{
+			// The conversion is the same as in Color.RGBtoHSB but doesn't need an array
+			int max = Math.max(red, Math.max(green, blue));
+			int min = Math.min(red, Math.min(green, blue));
+			float brightness = max / 255.0f;
+			float saturation = max == 0 ? 0 : (max - min) / (float) max;
+			float hue = 0;
+			if (saturation != 0)
+			{
+				float redc = (max - red) / (float) (max - min);
+				float greenc = (max - green) / (float) (max - min);
+				float bluec = (max - blue) / (float) (max - min);
+				if (red == max)
+					hue = bluec - greenc;
+				else if (green == max)
+					hue = 2.0f + redc - bluec;
+				else
+					hue = 4.0f + greenc - redc;
+				hue = hue / 6.0f;
+				if (hue < 0)
+					hue = hue + 1.0f;
+			}
+			
+			if (this.hueAdjustment != 0)
+			{
+				hue += this.hueAdjustment * effectModifier;
+				if (hue > 1)
+					hue -= 1;
+				else if (hue < 0)
+					hue += 1;
+			}
+			if (this.saturationAdjustment != 0)
+			{
+				saturation += this.saturationAdjustment * effectModifier;
+				if (saturation > 1)
+					saturation = 1;
+				else if (saturation < 0)
+					saturation = 0;
+			}
+			
+			int newpixel = Color.HSBtoRGB(hue, saturation, brightness);
+			red = Colors.red(newpixel);
+			green = Colors.green(newpixel);
+			blue = Colors.blue(newpixel);
+			
+			return Colors.rgba(red, green, blue, alpha);
+		}
+		else
+			return pixel;
 	}
-
+	
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(this.hueAdjustment, this.saturationAdjustment, this.target);
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof HSBFilter))
+			return false;
+		
+		HSBFilter other = (HSBFilter) obj;
+		return Double.compare(this.hueAdjustment, other.hueAdjustment) == 0 && 
+				Double.compare(this.saturationAdjustment, other.saturationAdjustment) == 0 && 
+				Objects.equals(this.target, other.target);
+	}
+	
 	
 	// NESTED CLASSES	-------------
 	
@@ -123,6 +170,8 @@ public class HSBFilter implements ImageFilter
 		
 		private int red, green, blue, range;
 		private boolean inclusive;
+		// The effect modifiers are calculated beforehand for each colour difference
+		private double[] modifiers;
 		
 		
 		// CONSTRUCTOR	-------------
@@ -141,6 +190,36 @@ public class HSBFilter implements ImageFilter
 			this.blue = colour.getBlue();
 			this.range = range;
 			this.inclusive = inclusive;
+			
+			// The difference between two colours is at most 3 * 255
+			this.modifiers = new double[Math.max(0, Math.min(range, 3 * 255) + 1)];
+			for (int difference = 0; difference < this.modifiers.length; difference++)
+			{
+				this.modifiers[difference] = calculateEffectModifier(difference);
+			}
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(this.red, this.green, this.blue, this.range, this.inclusive);
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ColourTarget))
+				return false;
+			
+			ColourTarget other = (ColourTarget) obj;
+			return this.red == other.red && this.green == other.green && 
+					this.blue == other.blue && this.range == other.range && 
+					this.inclusive == other.inclusive;
 		}
 		
 		
@@ -162,6 +241,11 @@ public class HSBFilter implements ImageFilter
 			if (difference > this.range)
 				return 0;
 			
+			return this.modifiers[difference];
+		}
+		
+		private double calculateEffectModifier(int difference)
+		{
 			// Uses a sin function for the effectiveness
 			// (sin(2 * (x * 1.6) - 1.6)  + 1) / 2
 			double x = difference / (double) this.range;
@@ -3,7 +3,9 @@ package utopia.vision.filter;
 import java.awt.image.BufferedImage;
 
 /**
- * Image filters can be applied to images in order to change them somehow
+ * Image filters can be applied to images in order to change them somehow. Filters should be 
+ * immutable and equal to the other filters that produce the same results, so that the sprite 
+ * drawers using equal filters can share their filtered frames.
  * @author Mikko Hilpinen
  * @since 18.6.2016
  */
@@ -16,4 +18,41 @@ public interface ImageFilter
 	 * @return The filtered image
 	 */
 	public BufferedImage filter(BufferedImage image);
+	
+	/**
+	 * Applies the filter on an image, writing the result into an existing image when 
+	 * possible. This way the same images can be reused when an image is filtered again. By 
+	 * default, a new image is always created.
+	 * @param source An image the filter is applied over
+	 * @param destination The image the result is written into. The destination is used only 
+	 * if it has the same size as the source and a type suitable for the filter. May be null, 
+	 * and may be the source if the filter {@link #supportsInPlace() can be applied in place}.
+	 * @return The filtered image. Either the destination or a new image.
+	 */
+	public default BufferedImage filter(BufferedImage source, BufferedImage destination)
+	{
+		return filter(source);
+	}
+	
+	/**
+	 * @return Whether the filter can write its result over the source image
+	 * @see #filter(BufferedImage, BufferedImage)
+	 */
+	public default boolean supportsInPlace()
+	{
+		return false;
+	}
+	
+	/**
+	 * Finds out how far from each pixel the filter reads the other pixels of the image. This 
+	 * is used for splitting images into parts that can be filtered separately.
+	 * @return The maximum horizontal and vertical distance of the pixels that affect a 
+	 * filtered pixel. 0 if each pixel is filtered separately. -1 if unknown, in which case 
+	 * the image is always filtered as a whole.
+	 * @see FilterExecutor
+	 */
+	public default int getSampleRadius()
+	{
+		return -1;
+	}
 }
@@ -2,18 +2,20 @@ package utopia.vision.filter;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.RescaleOp;
+import java.util.Arrays;
 
 /**
  * This filter increases / decreases the luminosity of a sprite
  * @author Mikko Hilpinen
  * @since 20.6.2016
  */
-public class LuminosityFilter implements ImageFilter
+public class LuminosityFilter implements PixelFilter
 {
 	// ATTRIBUTES	---------------
 	
 	private static final float[] OFFSETS = {0, 0, 0, 0};
 	private RescaleOp operation;
+	private short[][] tables;
 	
 	
 	// CONSTRUCTOR	---------------
@@ -26,7 +28,7 @@ public class LuminosityFilter implements ImageFilter
 	 */
 	public LuminosityFilter(float scale)
 	{
-		this.operation = new RescaleOp(new float[]{scale, scale, scale, 1f}, OFFSETS, null);
+		this(scale, scale, scale);
 	}
 	
 	/**
@@ -39,6 +41,8 @@ public class LuminosityFilter implements ImageFilter
 	public LuminosityFilter(float redScale, float greeScale, float blueScale)
 	{
 		this.operation = new RescaleOp(new float[] {redScale, greeScale, blueScale, 1f}, OFFSETS, null);
+		this.tables = new short[][] {createTable(redScale), createTable(greeScale), 
+				createTable(blueScale), createTable(1f)};
 	}
 	
 	
@@ -49,4 +53,60 @@ public class LuminosityFilter implements ImageFilter
 	{
 		return this.operation.filter(image, null);
 	}
+	
+	@Override
+	public BufferedImage filter(BufferedImage source, BufferedImage destination)
+	{
+		// The rescale operation can be applied in place. The type of the result is kept the 
+		// same.
+		if (FilterChain.fits(destination, source, source.getType()))
+			return this.operation.filter(source, destination);
+		else
+			return filter(source);
+	}
+	
+	@Override
+	public int filterPixel(int argb)
+	{
+		return FilterChain.applyTables(this.tables, argb);
+	}
+	
+	@Override
+	public short[][] getLookupTables()
+	{
+		return this.tables;
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return Arrays.deepHashCode(this.tables);
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof LuminosityFilter))
+			return false;
+		
+		// Filters with the same tables produce the same results
+		return Arrays.deepEquals(this.tables, ((LuminosityFilter) obj).tables);
+	}
+	
+	
+	// OTHER METHODS	-----------
+	
+	// Creates a table that scales the values like the rescale operation does
+	private static short[] createTable(float scale)
+	{
+		short[] table = new short[256];
+		for (int i = 0; i < table.length; i++)
+		{
+			table[i] = (short) Math.min(255, Math.max(0, (int) (i * scale)));
+		}
+		
+		return table;
+	}
 }
@@ -0,0 +1,42 @@
+package utopia.vision.filter;
+
+/**
+ * Pixel filters change each pixel separately, without looking at the pixels around it. A 
+ * {@link FilterChain} combines consecutive pixel filters so that they are all applied in a 
+ * single pass over the image.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public interface PixelFilter extends ImageFilter
+{
+	/**
+	 * Applies the filter to a single pixel
+	 * @param argb The pixel in (non-premultiplied) ARGB format
+	 * @return The filtered pixel in ARGB format
+	 */
+	public int filterPixel(int argb);
+	
+	/**
+	 * Filters that change each channel with a lookup table should return those tables so 
+	 * that they can be combined with the tables of other filters.
+	 * @return The lookup tables of the filter in order red, green, blue, alpha. Each table 
+	 * has 256 values between 0 and 255. Null if the filter doesn't use lookup tables. The 
+	 * tables shouldn't be modified.
+	 */
+	public default short[][] getLookupTables()
+	{
+		return null;
+	}
+	
+	@Override
+	public default int getSampleRadius()
+	{
+		return 0;
+	}
+	
+	@Override
+	public default boolean supportsInPlace()
+	{
+		return true;
+	}
+}
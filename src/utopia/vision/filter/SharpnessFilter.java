@@ -1,11 +1,13 @@
 package utopia.vision.filter;
 
 import java.awt.image.BufferedImage;
-import java.awt.image.ConvolveOp;
 import java.awt.image.Kernel;
 
+import utopia.vision.filter.Convolution.EdgeMode;
+
 /**
- * This filter modifies the image sharpness, either increasing or decreasing it
+ * This filter modifies the image sharpness, either increasing or decreasing it. The edges 
+ * of the image are left as they are. The result is always an ARGB image.
  * @author Mikko Hilpinen
  * @since 20.6.2016
  */
@@ -13,18 +15,18 @@ public class SharpnessFilter implements ImageFilter
 {
 	// ATTRIBUTES	-----------------
 	
-	private static final float[] SHARPEN = new float[]
+	private static final Kernel SHARPEN = new Kernel(3, 3, new float[]
 	{
 	     0.0f, -1.0f, 0.0f,
 	    -1.0f, 5.0f, -1.0f,
 	     0.0f, -1.0f, 0.0f
-	};
-	private static final float[] BLUR = new float[]
+	});
+	private static final Kernel BLUR = new Kernel(3, 3, new float[]
 	{
 		0.05f, 0.15f, 0.05f,
 		0.15f, 0.2f, 0.15f, 
 		0.05f, 0.15f, 0.05f
-	};
+	});
 	
 	private boolean isSharpen = true;
 	
@@ -54,7 +56,59 @@ public class SharpnessFilter implements ImageFilter
 	@Override
 	public BufferedImage filter(BufferedImage image)
 	{
-		return convolve(image, this.isSharpen ? SHARPEN : BLUR, 3, 3);
+		return filter(image, null);
+	}
+	
+	@Override
+	public BufferedImage filter(BufferedImage source, BufferedImage destination)
+	{
+		int width = source.getWidth();
+		int height = source.getHeight();
+		// The pixel buffers are borrowed, so that large images don't create garbage
+		int[] pixels = FilterChain.readPixels(source, FilterChain.acquirePixels(width * height));
+		int[] results = FilterChain.acquirePixels(width * height);
+		
+		try
+		{
+			Convolution.convolve(pixels, results, width, height, 
+					this.isSharpen ? SHARPEN : BLUR, EdgeMode.NO_OP, false);
+			return FilterChain.writePixels(destination, source, results);
+		}
+		finally
+		{
+			FilterChain.releasePixels(pixels);
+			FilterChain.releasePixels(results);
+		}
+	}
+	
+	@Override
+	public boolean supportsInPlace()
+	{
+		return true;
+	}
+	
+	@Override
+	public int getSampleRadius()
+	{
+		// Both kernels are 3 x 3
+		return 1;
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return Boolean.hashCode(this.isSharpen);
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof SharpnessFilter))
+			return false;
+		
+		return this.isSharpen == ((SharpnessFilter) obj).isSharpen;
 	}
 	
 	
@@ -67,16 +121,4 @@ public class SharpnessFilter implements ImageFilter
 	{
 		return this.isSharpen;
 	}
-
-	
-	// OTHER METHODS	-----------
-	
-	private static BufferedImage convolve(BufferedImage image, float[] data, int kernelWidth, 
-			int kernelHeight)
-	{
-		// Creates the operation
-		ConvolveOp op = new ConvolveOp(new Kernel(kernelWidth, kernelHeight, data), 
-				ConvolveOp.EDGE_NO_OP, null);
-		return op.filter(image, null);
-	}
 }
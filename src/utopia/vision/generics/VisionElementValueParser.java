@@ -15,6 +15,7 @@ import utopia.flow.structure.TreeNode;
 import utopia.genesis.generics.GenesisDataType;
 import utopia.genesis.util.Vector3D;
 import utopia.vision.resource.Sprite;
+import utopia.vision.resource.SpriteCache;
 import utopia.vision.resource.Tile;
 import utopia.vision.resource.TileMap;
 
@@ -71,7 +72,7 @@ public class VisionElementValueParser implements ElementValueParser
 			TreeNode<Element> root = new TreeNode<>(new Element("tileMap"));
 			addChildElement(root, "origin", GenesisDataType.Vector(map.getOrigin()));
 			// Each tile is added under a separate node, paired with a position
-			for (Pair<Vector3D, Tile> tile : map.getTiles())
+			for (Pair<Vector3D, Tile> tile : map.getTileView())
 			{
 				TreeNode<Element> node = new TreeNode<>(new Element("tileData"));
 				addChildElement(node, "position", GenesisDataType.Vector(tile.getFirst()));
@@ -116,8 +117,8 @@ public class VisionElementValueParser implements ElementValueParser
 			
 			try
 			{
-				return VisionDataType.Sprite(new Sprite(new File(fileName), length, origin, size, 
-						animationSpeed));
+				return VisionDataType.Sprite(SpriteCache.load(new File(fileName), length, origin, 
+						size, animationSpeed));
 			}
 			catch (IOException e)
 			{
@@ -17,6 +17,7 @@ import utopia.flow.generics.Variable;
 import utopia.genesis.generics.GenesisDataType;
 import utopia.genesis.util.Vector3D;
 import utopia.vision.resource.Sprite;
+import utopia.vision.resource.SpriteCache;
 import utopia.vision.resource.Tile;
 
 /**
@@ -116,7 +117,7 @@ public class VisionValueParser implements ValueParser
 				
 				try
 				{
-					return VisionDataType.Sprite(new Sprite(sourceFile, length, origin, size, 
+					return VisionDataType.Sprite(SpriteCache.load(sourceFile, length, origin, size, 
 							animationSpeed));
 				}
 				catch (IOException e)
@@ -0,0 +1,108 @@
+package utopia.vision.resource;
+
+/**
+ * An animation clock keeps track of the progress of an animation of a certain length and 
+ * speed. A single clock can be shared between any number of drawers, in which case the 
+ * animation is advanced only once per step, no matter how many drawers use it. Each drawer 
+ * may offset the frame it reads by a phase of its own.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see SpriteDrawer#setAnimationClock(AnimationClock, int)
+ */
+public class AnimationClock
+{
+	// ATTRIBUTES	-----------------
+	
+	private int length;
+	private double speed, position = 0;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new animation clock
+	 * @param length The length of the animation in frames
+	 * @param framesPerSecond How fast the animation proceeds (frames / second)
+	 */
+	public AnimationClock(int length, double framesPerSecond)
+	{
+		this.length = Math.max(1, length);
+		this.speed = framesPerSecond;
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return The length of the animation in frames
+	 */
+	public int getLength()
+	{
+		return this.length;
+	}
+	
+	/**
+	 * @return How fast the animation proceeds (frames / second)
+	 */
+	public double getSpeed()
+	{
+		return this.speed;
+	}
+	
+	/**
+	 * @return The exact progress of the animation [0, length[
+	 */
+	public double getPosition()
+	{
+		return this.position;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * @return The index of the current frame [0, length[
+	 */
+	public int getFrameIndex()
+	{
+		return (int) this.position;
+	}
+	
+	/**
+	 * Finds the current frame for a drawer that is offset from the clock
+	 * @param phase How many frames ahead of the clock the drawer is
+	 * @return The index of the drawer's current frame [0, length[
+	 */
+	public int getFrameIndex(int phase)
+	{
+		return Math.floorMod(getFrameIndex() + phase, this.length);
+	}
+	
+	/**
+	 * Advances the animation
+	 * @param durationMillis The duration of the update in milliseconds
+	 * @return Whether the frame changed
+	 */
+	public boolean animate(double durationMillis)
+	{
+		int previousIndex = getFrameIndex();
+		
+		double position = (this.position + durationMillis * this.speed / 1000) % this.length;
+		if (position < 0)
+			position += this.length;
+		// Rounding may bring the position up to the length
+		if (position >= this.length)
+			position = 0;
+		this.position = position;
+		
+		return getFrameIndex() != previousIndex;
+	}
+	
+	/**
+	 * Moves the animation back to its first frame
+	 */
+	public void reset()
+	{
+		this.position = 0;
+	}
+}
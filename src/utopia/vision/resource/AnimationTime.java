@@ -0,0 +1,53 @@
+package utopia.vision.resource;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * This static interface provides the time used by the time based animations. By default, the 
+ * time is read from the system's monotonic timer, but a program may provide its own time 
+ * source, for example one that stops while the game is paused.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see SpriteDrawer#setTimeBased(boolean)
+ */
+public class AnimationTime
+{
+	// ATTRIBUTES	-----------------
+	
+	private static final long START_NANOS = System.nanoTime();
+	private static DoubleSupplier source = null;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private AnimationTime()
+	{
+		// Static interface
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * @return The current animation time in milliseconds. The time never decreases.
+	 */
+	public static double now()
+	{
+		if (source == null)
+			return (System.nanoTime() - START_NANOS) / 1000000.0;
+		else
+			return source.getAsDouble();
+	}
+	
+	/**
+	 * Changes the source of the animation time. The animations that are already running 
+	 * continue from the time provided by the new source, so the source should be changed 
+	 * before the animations are started.
+	 * @param millisSource A function that returns the current time in milliseconds. The 
+	 * returned time must never decrease. Null if the system timer should be used.
+	 */
+	public static void setSource(DoubleSupplier millisSource)
+	{
+		source = millisSource;
+	}
+}
@@ -0,0 +1,57 @@
+package utopia.vision.resource;
+
+import utopia.arc.resource.BankBank;
+
+/**
+ * This chunk source reads the chunks from a tile map bank. Each chunk is stored as a 
+ * separate tile map, named after the chunk's indices ("x_y", "3_-2", for example). The bank 
+ * keeps every chunk in memory once it has been initialised, so releasing the chunks only 
+ * frees the drawers' resources. Use a {@link FileChunkSource} when the whole map shouldn't 
+ * be resident.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class BankChunkSource implements ChunkSource
+{
+	// ATTRIBUTES	-----------------
+	
+	private BankBank<TileMap> maps;
+	private String bankName;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new chunk source
+	 * @param maps The tile map resources
+	 * @param bankName The name of the bank that contains the chunks
+	 */
+	public BankChunkSource(BankBank<TileMap> maps, String bankName)
+	{
+		this.maps = maps;
+		this.bankName = bankName;
+	}
+	
+	
+	// IMPLEMENTED METHODS	---------
+	
+	@Override
+	public TileMap loadChunk(int chunkX, int chunkY)
+	{
+		return this.maps.get(this.bankName, getChunkName(chunkX, chunkY));
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Finds the name of a chunk in the bank
+	 * @param chunkX The x-index of the chunk
+	 * @param chunkY The y-index of the chunk
+	 * @return The name of the chunk's tile map
+	 */
+	public static String getChunkName(int chunkX, int chunkY)
+	{
+		return chunkX + "_" + chunkY;
+	}
+}
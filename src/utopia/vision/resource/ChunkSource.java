@@ -0,0 +1,24 @@
+package utopia.vision.resource;
+
+import java.io.IOException;
+
+/**
+ * Chunk sources provide the chunks of a chunked tile map when they are needed. The chunks 
+ * are requested from background threads.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see ChunkedTileMap
+ */
+public interface ChunkSource
+{
+	/**
+	 * Loads a single chunk of a tile map
+	 * @param chunkX The x-index of the chunk
+	 * @param chunkY The y-index of the chunk
+	 * @return A tile map containing the tiles positioned in the chunk. The tile positions 
+	 * are in the coordinate system of the whole map, not relative to the chunk. Null if the 
+	 * chunk is empty.
+	 * @throws IOException If the chunk couldn't be loaded
+	 */
+	public TileMap loadChunk(int chunkX, int chunkY) throws IOException;
+}
@@ -0,0 +1,301 @@
+package utopia.vision.resource;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utopia.flow.structure.Pair;
+import utopia.genesis.util.Vector3D;
+
+/**
+ * A chunked tile map is split into fixed-size chunks, which are loaded only when they come 
+ * into view. Loading happens in the background and the chunks far from the visible area are 
+ * released, so the whole map never needs to be in memory. Each chunk is a separate 
+ * {@link TileMap}. A tile belongs to the chunk that contains its position. The tiles 
+ * shouldn't be larger than the chunks.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see ChunkedTileMapDrawer
+ */
+public class ChunkedTileMap
+{
+	// ATTRIBUTES	-----------------
+	
+	private ChunkSource source;
+	private Vector3D chunkSize, origin;
+	private int retainDistance = 1;
+	
+	private ExecutorService executor;
+	private boolean ownsExecutor;
+	private Map<Long, CompletableFuture<TileMap>> chunks = new ConcurrentHashMap<>();
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new chunked map that loads its chunks on a single background thread
+	 * @param source The source that provides the chunks
+	 * @param chunkSize The size of a single chunk
+	 * @param origin The origin used for this map by default
+	 */
+	public ChunkedTileMap(ChunkSource source, Vector3D chunkSize, Vector3D origin)
+	{
+		this.source = source;
+		this.chunkSize = chunkSize;
+		this.origin = origin;
+		this.executor = Executors.newSingleThreadExecutor(new LoaderThreadFactory());
+		this.ownsExecutor = true;
+	}
+	
+	/**
+	 * Creates a new chunked map that uses an existing executor for loading the chunks. The 
+	 * executor won't be shut down by the map.
+	 * @param source The source that provides the chunks
+	 * @param chunkSize The size of a single chunk
+	 * @param origin The origin used for this map by default
+	 * @param executor The executor that loads the chunks
+	 */
+	public ChunkedTileMap(ChunkSource source, Vector3D chunkSize, Vector3D origin, 
+			ExecutorService executor)
+	{
+		this.source = source;
+		this.chunkSize = chunkSize;
+		this.origin = origin;
+		this.executor = executor;
+		this.ownsExecutor = false;
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return The size of a single chunk
+	 */
+	public Vector3D getChunkSize()
+	{
+		return this.chunkSize;
+	}
+	
+	/**
+	 * @return The origin used for this map by default
+	 */
+	public Vector3D getOrigin()
+	{
+		return this.origin;
+	}
+	
+	/**
+	 * @return How many chunks away from the visible area the chunks are kept in memory
+	 */
+	public int getRetainDistance()
+	{
+		return this.retainDistance;
+	}
+	
+	/**
+	 * Changes how long the chunks are kept in memory once they're no longer visible
+	 * @param chunks How many chunks away from the visible area the chunks are kept in memory 
+	 * (default 1). The chunks right next to the visible area are always loaded in advance.
+	 */
+	public void setRetainDistance(int chunks)
+	{
+		this.retainDistance = Math.max(1, chunks);
+	}
+	
+	/**
+	 * @return How many chunks are currently loaded or being loaded
+	 */
+	public int getChunkAmount()
+	{
+		return this.chunks.size();
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Updates the area of the map that is being viewed. The chunks in and right next to the 
+	 * area are loaded in the background and the chunks far from the area are released.
+	 * @param visiblePosition The top left corner of the visible area, in the map's coordinate 
+	 * system
+	 * @param visibleSize The size of the visible area
+	 */
+	public void update(Vector3D visiblePosition, Vector3D visibleSize)
+	{
+		int firstX = getChunkX(visiblePosition.getX());
+		int firstY = getChunkY(visiblePosition.getY());
+		int lastX = getChunkX(visiblePosition.getX() + visibleSize.getX());
+		int lastY = getChunkY(visiblePosition.getY() + visibleSize.getY());
+		
+		// Releases the chunks that are too far away
+		Iterator<Map.Entry<Long, CompletableFuture<TileMap>>> iterator = 
+				this.chunks.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Long, CompletableFuture<TileMap>> entry = iterator.next();
+			int chunkX = keyToX(entry.getKey());
+			int chunkY = keyToY(entry.getKey());
+			
+			if (chunkX < firstX - this.retainDistance || chunkX > lastX + this.retainDistance || 
+					chunkY < firstY - this.retainDistance || chunkY > lastY + this.retainDistance)
+			{
+				entry.getValue().cancel(false);
+				iterator.remove();
+			}
+		}
+		
+		// Starts loading the missing chunks. The surrounding chunks are loaded as well, since
+		// they may contain tiles that extend into the area.
+		for (int chunkY = firstY - 1; chunkY <= lastY + 1; chunkY++)
+		{
+			for (int chunkX = firstX - 1; chunkX <= lastX + 1; chunkX++)
+			{
+				long key = toKey(chunkX, chunkY);
+				if (!this.chunks.containsKey(key))
+					this.chunks.put(key, load(chunkX, chunkY));
+			}
+		}
+	}
+	
+	/**
+	 * Finds a loaded chunk
+	 * @param chunkX The x-index of the chunk
+	 * @param chunkY The y-index of the chunk
+	 * @return The chunk's tiles. Null if the chunk is empty, isn't loaded yet or failed to 
+	 * load.
+	 */
+	public TileMap getChunk(int chunkX, int chunkY)
+	{
+		CompletableFuture<TileMap> chunk = this.chunks.get(toKey(chunkX, chunkY));
+		if (chunk == null || !chunk.isDone() || chunk.isCompletedExceptionally())
+			return null;
+		else
+			return chunk.join();
+	}
+	
+	/**
+	 * Finds the tile that contains the provided point. Only the loaded chunks are checked.
+	 * @param position a position in the map
+	 * @return The tile at that position or null if that position is empty or not loaded. 
+	 * Both the tile and its position are returned.
+	 */
+	public Pair<Vector3D, Tile> getTileAt(Vector3D position)
+	{
+		int centerX = getChunkX(position.getX());
+		int centerY = getChunkY(position.getY());
+		
+		// The tiles may extend from the previous chunks
+		for (int chunkY = centerY; chunkY >= centerY - 1; chunkY--)
+		{
+			for (int chunkX = centerX; chunkX >= centerX - 1; chunkX--)
+			{
+				TileMap chunk = getChunk(chunkX, chunkY);
+				if (chunk != null)
+				{
+					Pair<Vector3D, Tile> tile = chunk.getTileAt(position);
+					if (tile != null)
+						return tile;
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Finds the x-index of the chunk that contains the provided x-coordinate
+	 * @param x An x-coordinate in the map's coordinate system
+	 * @return The x-index of the chunk
+	 */
+	public int getChunkX(double x)
+	{
+		return (int) Math.floor(x / this.chunkSize.getX());
+	}
+	
+	/**
+	 * Finds the y-index of the chunk that contains the provided y-coordinate
+	 * @param y A y-coordinate in the map's coordinate system
+	 * @return The y-index of the chunk
+	 */
+	public int getChunkY(double y)
+	{
+		return (int) Math.floor(y / this.chunkSize.getY());
+	}
+	
+	/**
+	 * Releases all of the loaded chunks
+	 */
+	public void clear()
+	{
+		for (CompletableFuture<TileMap> chunk : this.chunks.values())
+		{
+			chunk.cancel(false);
+		}
+		this.chunks.clear();
+	}
+	
+	/**
+	 * Stops the loading thread once the currently requested chunks have been loaded. If the 
+	 * map was created with an existing executor, the executor is left running.
+	 */
+	public void shutdown()
+	{
+		if (this.ownsExecutor)
+			this.executor.shutdown();
+	}
+	
+	private CompletableFuture<TileMap> load(int chunkX, int chunkY)
+	{
+		return CompletableFuture.supplyAsync(() ->
+		{
+			try
+			{
+				return this.source.loadChunk(chunkX, chunkY);
+			}
+			catch (IOException e)
+			{
+				throw new CompletionException(e);
+			}
+		}, this.executor);
+	}
+	
+	// Chunks are identified by their indices, packed into a single value
+	static long toKey(int chunkX, int chunkY)
+	{
+		return ((long) chunkX << 32) | (chunkY & 0xffffffffL);
+	}
+	
+	static int keyToX(long key)
+	{
+		return (int) (key >> 32);
+	}
+	
+	static int keyToY(long key)
+	{
+		return (int) key;
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	// The loader threads don't prevent the program from closing
+	private static class LoaderThreadFactory implements ThreadFactory
+	{
+		private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+		
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "Tile chunk loader " + THREAD_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
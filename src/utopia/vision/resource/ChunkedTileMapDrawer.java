@@ -0,0 +1,184 @@
+package utopia.vision.resource;
+
+import java.awt.Graphics2D;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import utopia.arc.resource.BankBank;
+import utopia.genesis.util.Vector3D;
+
+/**
+ * This class draws the visible part of a chunked tile map. Each loaded chunk is drawn with a 
+ * separate {@link TileMapDrawer}, which is created when the chunk first becomes visible and 
+ * released along with the chunk.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see ChunkedTileMap
+ */
+public class ChunkedTileMapDrawer
+{
+	// ATTRIBUTES	-----------------
+	
+	private ChunkedTileMap map;
+	private BankBank<Sprite> spriteResources;
+	private Vector3D forcedOrigin = null;
+	private TileMapDrawer.DrawMode drawMode = TileMapDrawer.DrawMode.DIRECT;
+	
+	private Map<Long, TileMapDrawer> drawers = new ConcurrentHashMap<>();
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new chunked tile map drawer
+	 * @param map The map that is drawn
+	 * @param spriteResources The sprite resources used for finding the correct sprites for 
+	 * each tile
+	 */
+	public ChunkedTileMapDrawer(ChunkedTileMap map, BankBank<Sprite> spriteResources)
+	{
+		this.map = map;
+		this.spriteResources = spriteResources;
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return The map drawn by this drawer
+	 */
+	public ChunkedTileMap getTileMap()
+	{
+		return this.map;
+	}
+	
+	/**
+	 * @return The origin used when the drawer draws the map
+	 */
+	public Vector3D getOrigin()
+	{
+		if (this.forcedOrigin == null)
+			return this.map.getOrigin();
+		else
+			return this.forcedOrigin;
+	}
+	
+	/**
+	 * Changes the origin used when drawing the map
+	 * @param origin The new origin that is used. Use null for the map's default origin.
+	 */
+	public void setOrigin(Vector3D origin)
+	{
+		this.forcedOrigin = origin;
+		for (TileMapDrawer drawer : this.drawers.values())
+		{
+			drawer.setOrigin(getOrigin());
+		}
+	}
+	
+	/**
+	 * Changes the way the chunks are drawn
+	 * @param mode The drawing mode used for each chunk
+	 * @see TileMapDrawer#setDrawMode(TileMapDrawer.DrawMode)
+	 */
+	public void setDrawMode(TileMapDrawer.DrawMode mode)
+	{
+		this.drawMode = mode;
+		for (TileMapDrawer drawer : this.drawers.values())
+		{
+			drawer.setDrawMode(mode);
+		}
+	}
+	
+	/**
+	 * @return The way the chunks are drawn
+	 */
+	public TileMapDrawer.DrawMode getDrawMode()
+	{
+		return this.drawMode;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Draws the visible part of the map. The visible area is also passed to the map so that 
+	 * it can load the chunks coming into view and release the chunks far away. The chunks 
+	 * that haven't been loaded yet are not drawn.
+	 * @param g2d The graphics object used for doing the actual drawing
+	 * @param visiblePosition The top left corner of the visible area, in the same coordinate 
+	 * system the map is drawn in (where the map's origin is at (0, 0))
+	 * @param visibleSize The size of the visible area
+	 */
+	public void drawMap(Graphics2D g2d, Vector3D visiblePosition, Vector3D visibleSize)
+	{
+		Vector3D mapPosition = visiblePosition.plus(getOrigin());
+		this.map.update(mapPosition, visibleSize);
+		
+		// Forgets the drawers of the released chunks. The chunks may be kept elsewhere, so 
+		// the drawers have to stop listening to them.
+		Iterator<Map.Entry<Long, TileMapDrawer>> drawers = this.drawers.entrySet().iterator();
+		while (drawers.hasNext())
+		{
+			Map.Entry<Long, TileMapDrawer> entry = drawers.next();
+			long key = entry.getKey();
+			if (this.map.getChunk(ChunkedTileMap.keyToX(key), ChunkedTileMap.keyToY(key)) != 
+					entry.getValue().getTileMap())
+			{
+				drawers.remove();
+				release(entry.getValue());
+			}
+		}
+		
+		// The chunks are drawn from bottom right to top left, like the tiles
+		int firstX = this.map.getChunkX(mapPosition.getX()) - 1;
+		int firstY = this.map.getChunkY(mapPosition.getY()) - 1;
+		int lastX = this.map.getChunkX(mapPosition.getX() + visibleSize.getX());
+		int lastY = this.map.getChunkY(mapPosition.getY() + visibleSize.getY());
+		
+		for (int chunkY = lastY; chunkY >= firstY; chunkY--)
+		{
+			for (int chunkX = lastX; chunkX >= firstX; chunkX--)
+			{
+				TileMap chunk = this.map.getChunk(chunkX, chunkY);
+				if (chunk != null)
+					getDrawer(chunkX, chunkY, chunk).drawMap(g2d, visiblePosition, visibleSize);
+			}
+		}
+	}
+	
+	/**
+	 * Animates the tiles in the loaded chunks
+	 * @param duration The duration of the passed animation in steps
+	 */
+	public void animate(double duration)
+	{
+		for (TileMapDrawer drawer : this.drawers.values())
+		{
+			drawer.animate(duration);
+		}
+	}
+	
+	private TileMapDrawer getDrawer(int chunkX, int chunkY, TileMap chunk)
+	{
+		long key = ChunkedTileMap.toKey(chunkX, chunkY);
+		TileMapDrawer drawer = this.drawers.get(key);
+		if (drawer == null || drawer.getTileMap() != chunk)
+		{
+			if (drawer != null)
+				release(drawer);
+			drawer = new TileMapDrawer(chunk, this.spriteResources, getOrigin());
+			drawer.setDrawMode(this.drawMode);
+			this.drawers.put(key, drawer);
+		}
+		
+		return drawer;
+	}
+	
+	private static void release(TileMapDrawer drawer)
+	{
+		// Detaches the drawer from its map and releases its images
+		drawer.setTileMap(null, null);
+	}
+}
@@ -0,0 +1,168 @@
+package utopia.vision.resource;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import utopia.vision.util.ImageCache;
+import utopia.vision.util.ImageCache.EvictionPolicy;
+
+/**
+ * The decoded frame cache holds the frames of lazy sprites. The frames are read from their 
+ * sources when they're first needed and read again if they have been removed from the cache 
+ * in the meanwhile.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see FrameSource
+ */
+public class DecodedFrameCache
+{
+	// ATTRIBUTES	-----------------
+	
+	/**
+	 * The default memory budget of the cache, in bytes
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 128 * 1024 * 1024;
+	
+	private static final ImageCache<Key> CACHE = new ImageCache<>(DEFAULT_MEMORY_BUDGET);
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private DecodedFrameCache()
+	{
+		// Static interface
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * Changes the amount of decoded frame data that is kept in memory
+	 * @param maxBytes The maximum amount of decoded frame data, in bytes
+	 */
+	public static void setMaxBytes(long maxBytes)
+	{
+		CACHE.setMaxBytes(maxBytes);
+	}
+	
+	/**
+	 * @return The maximum amount of decoded frame data kept in memory, in bytes
+	 */
+	public static long getMaxBytes()
+	{
+		return CACHE.getMaxBytes();
+	}
+	
+	/**
+	 * @return The amount of decoded frame data currently kept in memory, in bytes
+	 */
+	public static long getUsedBytes()
+	{
+		return CACHE.getUsedBytes();
+	}
+	
+	/**
+	 * Changes the way frames are selected for removal once the memory budget is exceeded
+	 * @param policy The new eviction policy. Least recently used by default.
+	 */
+	public static void setEvictionPolicy(EvictionPolicy policy)
+	{
+		CACHE.setEvictionPolicy(policy);
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Releases all of the cached frames. The frames will be read again when needed.
+	 */
+	public static void clear()
+	{
+		CACHE.clear();
+	}
+	
+	/**
+	 * Finds a single frame, reading it from its source if necessary
+	 * @param source The source of the frame
+	 * @param index The index of the frame [0, source length[
+	 * @return The frame from the source
+	 * @throws UncheckedIOException If the frame had to be read and reading failed
+	 */
+	static BufferedImage getFrame(FrameSource source, int index) throws UncheckedIOException
+	{
+		BufferedImage frame = CACHE.get(new Key(source, index));
+		if (frame != null)
+			return frame;
+		
+		// Unless the frame can be read separately, all of the frames are read at once, so 
+		// they're all cached as well
+		BufferedImage[] frames;
+		try
+		{
+			if (source.readsFramesSeparately())
+			{
+				frame = source.readFrame(index);
+				CACHE.put(new Key(source, index), frame);
+				return frame;
+			}
+			
+			frames = source.readFrames();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Failed to read the frames of a lazy sprite", e);
+		}
+		
+		// The requested frame is cached last so that it isn't the first one to be removed
+		for (int i = 0; i < frames.length; i++)
+		{
+			if (i != index)
+				CACHE.put(new Key(source, i), frames[i]);
+		}
+		CACHE.put(new Key(source, index), frames[index]);
+		
+		return frames[index];
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	private static class Key
+	{
+		// ATTRIBUTES	-------------
+		
+		private FrameSource source;
+		private int index;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public Key(FrameSource source, int index)
+		{
+			this.source = source;
+			this.index = index;
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public int hashCode()
+		{
+			return 31 * System.identityHashCode(this.source) + this.index;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			
+			Key other = (Key) obj;
+			return this.source == other.source && this.index == other.index;
+		}
+	}
+}
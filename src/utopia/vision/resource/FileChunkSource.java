@@ -0,0 +1,194 @@
+package utopia.vision.resource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import utopia.flow.structure.Pair;
+import utopia.genesis.util.Vector3D;
+
+/**
+ * This chunk source reads each chunk from its own file when the chunk is requested. Nothing 
+ * is kept in memory between the requests, so the chunks released by a 
+ * {@link ChunkedTileMap} can actually be collected. The chunk files are named after the 
+ * chunk's indices ("3_-2.vtc", for example) and can be written with 
+ * {@link #write(TileMap, File)}. A chunk without a file is considered empty.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class FileChunkSource implements ChunkSource
+{
+	// ATTRIBUTES	-----------------
+	
+	/**
+	 * The file extension used for the chunk files
+	 */
+	public static final String FILE_EXTENSION = ".vtc";
+	
+	private static final int MAGIC = 0x56544301;
+	private static final int VERSION = 1;
+	
+	private File directory;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new chunk source
+	 * @param directory The directory that contains the chunk files
+	 */
+	public FileChunkSource(File directory)
+	{
+		this.directory = directory;
+	}
+	
+	
+	// IMPLEMENTED METHODS	---------
+	
+	@Override
+	public TileMap loadChunk(int chunkX, int chunkY) throws IOException
+	{
+		File file = getChunkFile(chunkX, chunkY);
+		if (!file.isFile())
+			return null;
+		
+		return read(file);
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return The directory that contains the chunk files
+	 */
+	public File getDirectory()
+	{
+		return this.directory;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Finds the file of a chunk
+	 * @param chunkX The x-index of the chunk
+	 * @param chunkY The y-index of the chunk
+	 * @return The file that contains the chunk. The file may not exist.
+	 */
+	public File getChunkFile(int chunkX, int chunkY)
+	{
+		return new File(this.directory, BankChunkSource.getChunkName(chunkX, chunkY) + 
+				FILE_EXTENSION);
+	}
+	
+	/**
+	 * Writes a chunk into a file
+	 * @param chunk The tile map containing the tiles of the chunk
+	 * @param file The file the chunk is written into
+	 * @throws IOException If the file couldn't be written
+	 */
+	public static void write(TileMap chunk, File file) throws IOException
+	{
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream( 
+				new FileOutputStream(file))))
+		{
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeDouble(chunk.getOrigin().getX());
+			output.writeDouble(chunk.getOrigin().getY());
+			
+			// Each distinct tile is written only once
+			output.writeInt(chunk.getPaletteSize());
+			for (int kind = 0; kind < chunk.getPaletteSize(); kind++)
+			{
+				writeTile(output, chunk.getPaletteTile(kind));
+			}
+			
+			output.writeInt(chunk.getTileAmount());
+			for (int i = 0; i < chunk.getTileAmount(); i++)
+			{
+				output.writeDouble(chunk.getTileX(i));
+				output.writeDouble(chunk.getTileY(i));
+				output.writeShort(chunk.getTileKind(i));
+			}
+		}
+	}
+	
+	/**
+	 * Reads a chunk from a file
+	 * @param file The file that contains the chunk
+	 * @return The tile map containing the tiles of the chunk
+	 * @throws IOException If the file couldn't be read or isn't a chunk file
+	 */
+	public static TileMap read(File file) throws IOException
+	{
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream( 
+				new FileInputStream(file))))
+		{
+			if (input.readInt() != MAGIC || input.readInt() != VERSION)
+				throw new IOException(file + " is not a chunk file");
+			Vector3D origin = new Vector3D(input.readDouble(), input.readDouble());
+			
+			int paletteSize = input.readInt();
+			if (paletteSize < 0 || paletteSize > TileMap.MAX_PALETTE_SIZE)
+				throw new IOException("Invalid palette size " + paletteSize + " in " + file);
+			Tile[] palette = new Tile[paletteSize];
+			for (int kind = 0; kind < paletteSize; kind++)
+			{
+				palette[kind] = readTile(input);
+			}
+			
+			int tileAmount = input.readInt();
+			if (tileAmount < 0)
+				throw new IOException("Invalid tile amount " + tileAmount + " in " + file);
+			List<Pair<Vector3D, Tile>> tiles = new ArrayList<>(tileAmount);
+			for (int i = 0; i < tileAmount; i++)
+			{
+				Vector3D position = new Vector3D(input.readDouble(), input.readDouble());
+				int kind = input.readUnsignedShort();
+				if (kind >= paletteSize)
+					throw new IOException("Invalid tile kind " + kind + " in " + file);
+				tiles.add(new Pair<>(position, palette[kind]));
+			}
+			
+			return new TileMap(tiles, origin);
+		}
+	}
+	
+	private static void writeTile(DataOutputStream output, Tile tile) throws IOException
+	{
+		writeNullable(output, tile.getSpriteBankName());
+		writeNullable(output, tile.getSpriteName());
+		output.writeDouble(tile.getSize().getX());
+		output.writeDouble(tile.getSize().getY());
+		output.writeInt(tile.getStartFrameIndex());
+		output.writeBoolean(tile.isAnimated());
+	}
+	
+	private static Tile readTile(DataInputStream input) throws IOException
+	{
+		String bankName = readNullable(input);
+		String spriteName = readNullable(input);
+		Vector3D size = new Vector3D(input.readDouble(), input.readDouble());
+		return new Tile(bankName, spriteName, size, input.readInt(), input.readBoolean());
+	}
+	
+	private static void writeNullable(DataOutputStream output, String text) throws IOException
+	{
+		output.writeBoolean(text != null);
+		if (text != null)
+			output.writeUTF(text);
+	}
+	
+	private static String readNullable(DataInputStream input) throws IOException
+	{
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+}
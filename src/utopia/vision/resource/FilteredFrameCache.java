@@ -0,0 +1,464 @@
+package utopia.vision.resource;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import utopia.vision.filter.AnimatedFilter;
+import utopia.vision.filter.FilterChain;
+import utopia.vision.filter.FilterExecutor;
+import utopia.vision.filter.ImageFilter;
+import utopia.vision.util.ImageBufferPool;
+import utopia.vision.util.ImageCache;
+
+/**
+ * The filtered frame cache shares the filtered frames between the sprite drawers that apply 
+ * equal filters to the same sprite, so that a hundred drawers with the same filters hold 
+ * only a single set of filtered frames. The frames are kept as long as some drawer uses them. 
+ * Frames no longer in use are kept until the memory budget is exceeded, after which the 
+ * least recently used ones are released. The images of the released frames are returned to 
+ * the {@link ImageBufferPool} so that they can be reused when frames are filtered again. 
+ * The frames filtered with animated filters are cached one by one under the same budget. 
+ * The frames are filtered outside the cache's lock. When multiple threads request the same 
+ * frames at the same time, only one of them filters the frames and the others wait for it.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see SpriteDrawer#applyFilter(ImageFilter)
+ */
+public class FilteredFrameCache
+{
+	// ATTRIBUTES	-----------------
+	
+	/**
+	 * The default memory budget of the cache, in bytes
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64 * 1024 * 1024;
+	
+	private static final LinkedHashMap<Key, Frames> FRAMES = new LinkedHashMap<>(16, 0.75f, 
+			true);
+	// The frames that are currently being filtered
+	private static final Map<Key, CompletableFuture<Frames>> PENDING = new HashMap<>();
+	private static long maxBytes = DEFAULT_MEMORY_BUDGET, usedBytes = 0;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private FilteredFrameCache()
+	{
+		// Static interface
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * Changes the amount of filtered frame data that is kept in memory. Frames that are in 
+	 * use are always kept, even when they exceed the budget.
+	 * @param maxBytes The maximum amount of filtered frame data, in bytes
+	 */
+	public static synchronized void setMaxBytes(long maxBytes)
+	{
+		FilteredFrameCache.maxBytes = maxBytes;
+		evict();
+	}
+	
+	/**
+	 * @return The maximum amount of filtered frame data kept in memory, in bytes
+	 */
+	public static synchronized long getMaxBytes()
+	{
+		return maxBytes;
+	}
+	
+	/**
+	 * @return The amount of filtered frame data currently kept in memory, in bytes
+	 */
+	public static synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+	
+	/**
+	 * @return How many different sets of filtered frames are currently cached
+	 */
+	public static synchronized int size()
+	{
+		return FRAMES.size();
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Releases all of the cached frames that are not in use
+	 */
+	public static synchronized void clear()
+	{
+		long budget = maxBytes;
+		maxBytes = 0;
+		evict();
+		maxBytes = budget;
+	}
+	
+	/**
+	 * Finds the filtered frames of a sprite, filtering the frames if necessary. If the first 
+	 * filters have already been applied to the sprite, only the rest of the filters are 
+	 * applied on top of those frames.
+	 * @param user The object that uses the frames. The frames are kept until they are 
+	 * released by the user or the user is garbage collected.
+	 * @param sprite The sprite whose frames are filtered
+	 * @param filters The filters applied to the frames, in order. Shouldn't be empty.
+	 * @return The filtered frames. The frames are shared and shouldn't be modified.
+	 */
+	static Frames acquire(Object user, Sprite sprite, List<? extends ImageFilter> filters)
+	{
+		return findOrFilter(new Key(sprite, filters), user, () -> filterFrames(sprite, filters));
+	}
+	
+	/**
+	 * Informs the cache that the user no longer uses the frames
+	 * @param user The object that used the frames
+	 * @param frames The frames that were used
+	 */
+	static synchronized void release(Object user, Frames frames)
+	{
+		frames.users.remove(user);
+		evict();
+	}
+	
+	/**
+	 * Finds a frame filtered with an animated filter, filtering it if necessary. The animated 
+	 * frames are not held by any user, so they are released once the budget is exceeded.
+	 * @param sprite The sprite whose frame is filtered
+	 * @param filters The filters applied to the frame before the animated filter. May be 
+	 * empty.
+	 * @param frame The frame with the other filters applied
+	 * @param frameIndex The index of the frame in the sprite
+	 * @param filter The animated filter applied on top of the other filters
+	 * @param step The step of the animated filter
+	 * @return The filtered frame. The frame is shared and shouldn't be modified.
+	 */
+	static BufferedImage getAnimatedFrame(Sprite sprite, List<? extends ImageFilter> filters, 
+			BufferedImage frame, int frameIndex, AnimatedFilter filter, int step)
+	{
+		// The animated frames are drawn right after they're found, possibly after they 
+		// have been released already, so they aren't returned to the pool
+		return findOrFilter(new Key(sprite, filters, filter, step, frameIndex), null, 
+				() -> new Frames(new BufferedImage[] {filter.getFilter(step).filter(frame)}, 
+				new boolean[1])).frames[0];
+	}
+	
+	// Finds cached frames or filters them outside the lock. Only one thread filters the 
+	// frames of a key while the others wait for the result.
+	private static Frames findOrFilter(Key key, Object user, Supplier<Frames> filter)
+	{
+		while (true)
+		{
+			CompletableFuture<Frames> future;
+			boolean isFiltering = false;
+			synchronized (FilteredFrameCache.class)
+			{
+				Frames frames = FRAMES.get(key);
+				if (frames != null)
+					return use(frames, user);
+				
+				future = PENDING.get(key);
+				if (future == null)
+				{
+					// The key may refer to a list that is modified later
+					key = key.copy();
+					future = new CompletableFuture<>();
+					PENDING.put(key, future);
+					isFiltering = true;
+				}
+			}
+			
+			if (isFiltering)
+			{
+				Frames frames;
+				try
+				{
+					frames = filter.get();
+				}
+				catch (RuntimeException | Error e)
+				{
+					synchronized (FilteredFrameCache.class)
+					{
+						PENDING.remove(key);
+					}
+					future.completeExceptionally(e);
+					throw e;
+				}
+				
+				synchronized (FilteredFrameCache.class)
+				{
+					PENDING.remove(key);
+					FRAMES.put(key, frames);
+					usedBytes += frames.bytes;
+					use(frames, user);
+				}
+				future.complete(frames);
+				return frames;
+			}
+			
+			Frames frames;
+			try
+			{
+				frames = future.join();
+			}
+			catch (CompletionException e)
+			{
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw e;
+			}
+			
+			if (user == null)
+				return frames;
+			synchronized (FilteredFrameCache.class)
+			{
+				// The frames may have been released before the user could be added, in which 
+				// case they're filtered again
+				if (FRAMES.get(key) == frames)
+					return use(frames, user);
+			}
+		}
+	}
+	
+	private static Frames use(Frames frames, Object user)
+	{
+		if (user != null)
+			frames.users.add(user);
+		evict();
+		return frames;
+	}
+	
+	private static Frames filterFrames(Sprite sprite, List<? extends ImageFilter> filters)
+	{
+		// Uses the longest already filtered version as the base. The base frames are held 
+		// while they're used so that they're not released.
+		Object token = new Object();
+		Frames baseFrames = null;
+		int appliedAmount = filters.size() - 1;
+		synchronized (FilteredFrameCache.class)
+		{
+			while (baseFrames == null && appliedAmount > 0)
+			{
+				baseFrames = FRAMES.get(new Key(sprite, filters.subList(0, appliedAmount)));
+				if (baseFrames == null)
+					appliedAmount--;
+			}
+			if (baseFrames != null)
+				baseFrames.users.add(token);
+		}
+		
+		try
+		{
+			return filterFrames(sprite, filters, baseFrames, appliedAmount);
+		}
+		finally
+		{
+			if (baseFrames != null)
+				release(token, baseFrames);
+		}
+	}
+	
+	private static Frames filterFrames(Sprite sprite, List<? extends ImageFilter> filters, 
+			Frames baseFrames, int appliedAmount)
+	{
+		BufferedImage[] base = baseFrames == null ? null : baseFrames.frames;
+		if (base == null)
+		{
+			base = new BufferedImage[sprite.getLength()];
+			for (int i = 0; i < base.length; i++)
+			{
+				base[i] = sprite.getFrame(i);
+			}
+		}
+		
+		// The results are written into pooled images where possible
+		BufferedImage[] destinations = new BufferedImage[base.length];
+		for (int i = 0; i < base.length; i++)
+		{
+			destinations[i] = ImageBufferPool.acquire(base[i].getWidth(), base[i].getHeight());
+		}
+		
+		// Large sprites are filtered using multiple threads
+		BufferedImage[] filtered = FilterExecutor.filter(new FilterChain(filters.subList( 
+				appliedAmount, filters.size())), base, destinations);
+		
+		boolean[] pooled = new boolean[filtered.length];
+		for (int i = 0; i < filtered.length; i++)
+		{
+			pooled[i] = filtered[i] == destinations[i];
+			if (!pooled[i])
+				ImageBufferPool.release(destinations[i]);
+		}
+		
+		return new Frames(filtered, pooled);
+	}
+	
+	private static void evict()
+	{
+		// The map is in access order so the least recently used frames come first
+		Iterator<Map.Entry<Key, Frames>> iterator = FRAMES.entrySet().iterator();
+		while (usedBytes > maxBytes && iterator.hasNext())
+		{
+			Frames frames = iterator.next().getValue();
+			if (frames.users.isEmpty())
+			{
+				usedBytes -= frames.bytes;
+				iterator.remove();
+				frames.releaseImages();
+			}
+		}
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	/**
+	 * A shared set of filtered frames
+	 * @author Mikko Hilpinen
+	 * @since 16.10.2026
+	 */
+	static class Frames
+	{
+		// ATTRIBUTES	-------------
+		
+		private BufferedImage[] frames;
+		// Which frames were borrowed from the image buffer pool. Other frames may be the 
+		// original sprite frames, which must not be reused.
+		private boolean[] pooled;
+		private long bytes = 0;
+		// Users that are garbage collected are removed automatically
+		private Set<Object> users = Collections.newSetFromMap(new WeakHashMap<>());
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		private Frames(BufferedImage[] frames, boolean[] pooled)
+		{
+			this.frames = frames;
+			this.pooled = pooled;
+			for (BufferedImage frame : frames)
+			{
+				this.bytes += ImageCache.sizeOf(frame);
+			}
+		}
+		
+		
+		// ACCESSORS	-------------
+		
+		/**
+		 * @return The filtered frames. Shouldn't be modified.
+		 */
+		public BufferedImage[] getFrames()
+		{
+			return this.frames;
+		}
+		
+		
+		// OTHER METHODS	---------
+		
+		private void releaseImages()
+		{
+			for (int i = 0; i < this.frames.length; i++)
+			{
+				// The pooled images are overwritten later, so their scaled versions 
+				// mustn't be drawn anymore
+				if (this.pooled[i])
+				{
+					ScaledFrameCache.invalidate(this.frames[i]);
+					ImageBufferPool.release(this.frames[i]);
+				}
+			}
+		}
+	}
+	
+	private static class Key
+	{
+		// ATTRIBUTES	-------------
+		
+		private Sprite sprite;
+		private List<? extends ImageFilter> filters;
+		// The animated frames are cached separately for each frame and step
+		private AnimatedFilter animatedFilter = null;
+		private int step = 0, frameIndex = 0;
+		// The filters may be expensive to hash, so the hash is only computed once
+		private int hash;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public Key(Sprite sprite, List<? extends ImageFilter> filters)
+		{
+			this.sprite = sprite;
+			this.filters = filters;
+			this.hash = computeHash();
+		}
+		
+		public Key(Sprite sprite, List<? extends ImageFilter> filters, 
+				AnimatedFilter animatedFilter, int step, int frameIndex)
+		{
+			this.sprite = sprite;
+			this.filters = filters;
+			this.animatedFilter = animatedFilter;
+			this.step = step;
+			this.frameIndex = frameIndex;
+			this.hash = computeHash();
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			
+			Key other = (Key) obj;
+			if (this.hash != other.hash)
+				return false;
+			// Sprites and animated filters are compared by identity, other filters by value
+			return this.sprite == other.sprite && this.filters.equals(other.filters) && 
+					this.animatedFilter == other.animatedFilter && this.step == other.step && 
+					this.frameIndex == other.frameIndex;
+		}
+		
+		
+		// OTHER METHODS	---------
+		
+		public Key copy()
+		{
+			return new Key(this.sprite, new ArrayList<>(this.filters), this.animatedFilter, 
+					this.step, this.frameIndex);
+		}
+		
+		private int computeHash()
+		{
+			int result = 31 * System.identityHashCode(this.sprite) + this.filters.hashCode();
+			result = 31 * result + System.identityHashCode(this.animatedFilter);
+			return 31 * (31 * result + this.step) + this.frameIndex;
+		}
+	}
+}
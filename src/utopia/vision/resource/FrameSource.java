@@ -0,0 +1,70 @@
+package utopia.vision.resource;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A frame source is able to produce the frames of a sprite on demand. Frame sources are used 
+ * by lazy sprites, which don't hold on to their frames but read them from the source whenever 
+ * they are no longer cached.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see Sprite
+ * @see DecodedFrameCache
+ */
+public interface FrameSource
+{
+	/**
+	 * @return How many frames the source contains
+	 */
+	public int getLength();
+	
+	/**
+	 * @return The width of a single frame in pixels
+	 * @throws IOException If the frame size couldn't be read
+	 */
+	public int getFrameWidth() throws IOException;
+	
+	/**
+	 * @return The height of a single frame in pixels
+	 * @throws IOException If the frame size couldn't be read
+	 */
+	public int getFrameHeight() throws IOException;
+	
+	/**
+	 * Reads all the frames in this source. A new set of images should be produced each time 
+	 * this method is called.
+	 * @return The frames in this source, in order
+	 * @throws IOException If the frames couldn't be read
+	 */
+	public BufferedImage[] readFrames() throws IOException;
+	
+	/**
+	 * Reads a single frame from this source. By default, all of the frames are read.
+	 * @param index The index of the frame [0, length[
+	 * @return The frame at the provided index
+	 * @throws IOException If the frame couldn't be read
+	 */
+	public default BufferedImage readFrame(int index) throws IOException
+	{
+		return readFrames()[index];
+	}
+	
+	/**
+	 * @return Whether this source is able to read a single frame without reading the others. 
+	 * False by default.
+	 */
+	public default boolean readsFramesSeparately()
+	{
+		return false;
+	}
+	
+	/**
+	 * @return The image file the frames originate from. Null by default.
+	 */
+	public default File getSourceFile()
+	{
+		return null;
+	}
+}
@@ -0,0 +1,258 @@
+package utopia.vision.resource;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * This frame source keeps the pixels of the frames outside the java heap, in a direct byte 
+ * buffer. Images are created from the pixels only when the frames are drawn, and those images 
+ * are held in the {@link DecodedFrameCache}. The pixels can also be read directly without 
+ * creating any images.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class OffHeapFrameSource implements FrameSource
+{
+	// ATTRIBUTES	-----------------
+	
+	private IntBuffer pixels;
+	private int length, frameWidth, frameHeight;
+	private boolean premultiplied;
+	private File sourceFile;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new frame source that uses existing pixel data. The data is not copied.
+	 * @param pixels The pixels of the frames. The frames are stored one after another, each 
+	 * frame row by row, one (native order) int per pixel.
+	 * @param length How many frames the data contains
+	 * @param frameWidth The width of a single frame in pixels
+	 * @param frameHeight The height of a single frame in pixels
+	 * @param premultiplied Whether the pixels are in premultiplied ARGB (true) or in plain 
+	 * ARGB (false) format
+	 */
+	public OffHeapFrameSource(ByteBuffer pixels, int length, int frameWidth, int frameHeight, 
+			boolean premultiplied)
+	{
+		this(pixels, length, frameWidth, frameHeight, premultiplied, null);
+	}
+	
+	/**
+	 * Creates a new frame source that uses existing pixel data. The data is not copied.
+	 * @param pixels The pixels of the frames. The frames are stored one after another, each 
+	 * frame row by row, one (native order) int per pixel.
+	 * @param length How many frames the data contains
+	 * @param frameWidth The width of a single frame in pixels
+	 * @param frameHeight The height of a single frame in pixels
+	 * @param premultiplied Whether the pixels are in premultiplied ARGB (true) or in plain 
+	 * ARGB (false) format
+	 * @param sourceFile The image file the pixels originate from. Null if unknown.
+	 */
+	public OffHeapFrameSource(ByteBuffer pixels, int length, int frameWidth, int frameHeight, 
+			boolean premultiplied, File sourceFile)
+	{
+		if (pixels.remaining() < byteSize(length, frameWidth, frameHeight))
+			throw new IllegalArgumentException("The buffer doesn't contain " + length + 
+					" frames of size " + frameWidth + "x" + frameHeight);
+		
+		this.pixels = pixels.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+		this.length = length;
+		this.frameWidth = frameWidth;
+		this.frameHeight = frameHeight;
+		this.premultiplied = premultiplied;
+		this.sourceFile = sourceFile;
+	}
+	
+	/**
+	 * Copies the provided frames outside the java heap
+	 * @param frames The frames that are copied. All frames must be of the same size.
+	 * @return A frame source containing the frames
+	 */
+	public static OffHeapFrameSource copyOf(BufferedImage[] frames)
+	{
+		return copyOf(frames, null);
+	}
+	
+	private static OffHeapFrameSource copyOf(BufferedImage[] frames, File sourceFile)
+	{
+		int width = frames[0].getWidth();
+		int height = frames[0].getHeight();
+		
+		ByteBuffer buffer = ByteBuffer.allocateDirect(byteSize(frames.length, width, height));
+		buffer.order(ByteOrder.nativeOrder());
+		IntBuffer target = buffer.asIntBuffer();
+		int[] row = new int[width];
+		for (BufferedImage frame : frames)
+		{
+			for (int y = 0; y < height; y++)
+			{
+				frame.getRGB(0, y, width, 1, row, 0, width);
+				target.put(row);
+			}
+		}
+		
+		return new OffHeapFrameSource(buffer, frames.length, width, height, false, sourceFile);
+	}
+	
+	/**
+	 * Reads a strip image and stores its frames outside the java heap
+	 * @param file The image file for the strip
+	 * @param stripLength How many separate images does the strip contain?
+	 * @return A frame source containing the strip's frames
+	 * @throws IOException If the image couldn't be read
+	 */
+	public static OffHeapFrameSource load(File file, int stripLength) throws IOException
+	{
+		return copyOf(new StripFrameSource(file, stripLength).readFrames(), file);
+	}
+	
+	
+	// IMPLEMENTED METHODS	---------
+	
+	@Override
+	public int getLength()
+	{
+		return this.length;
+	}
+	
+	@Override
+	public int getFrameWidth()
+	{
+		return this.frameWidth;
+	}
+	
+	@Override
+	public int getFrameHeight()
+	{
+		return this.frameHeight;
+	}
+	
+	@Override
+	public BufferedImage[] readFrames()
+	{
+		BufferedImage[] frames = new BufferedImage[this.length];
+		for (int i = 0; i < frames.length; i++)
+		{
+			frames[i] = readFrame(i);
+		}
+		return frames;
+	}
+	
+	@Override
+	public BufferedImage readFrame(int index)
+	{
+		BufferedImage frame = new BufferedImage(this.frameWidth, this.frameHeight, 
+				this.premultiplied ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_ARGB);
+		int[] data = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+		getPixels(index).get(data);
+		
+		return frame;
+	}
+	
+	@Override
+	public boolean readsFramesSeparately()
+	{
+		return true;
+	}
+	
+	@Override
+	public File getSourceFile()
+	{
+		return this.sourceFile;
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return Whether the pixels are stored in premultiplied ARGB (true) or in plain ARGB 
+	 * (false) format
+	 */
+	public boolean isPremultiplied()
+	{
+		return this.premultiplied;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Provides a read-only view to the pixels of a single frame. No data is copied.
+	 * @param frameIndex The index of the frame [0, length[
+	 * @return The pixels of the frame, row by row. The format of the pixels depends from 
+	 * {@link #isPremultiplied()}
+	 * @throws IndexOutOfBoundsException If there is no frame with the index
+	 */
+	public IntBuffer getPixels(int frameIndex) throws IndexOutOfBoundsException
+	{
+		checkFrameIndex(frameIndex);
+		int frameSize = this.frameWidth * this.frameHeight;
+		
+		IntBuffer view = this.pixels.asReadOnlyBuffer();
+		view.position(frameIndex * frameSize);
+		view.limit((frameIndex + 1) * frameSize);
+		return view.slice();
+	}
+	
+	/**
+	 * Reads a single pixel without creating any images
+	 * @param frameIndex The index of the frame [0, length[
+	 * @param x The x-coordinate of the pixel
+	 * @param y The y-coordinate of the pixel
+	 * @return The pixel in plain (not premultiplied) ARGB format
+	 * @throws IndexOutOfBoundsException If there is no frame with the index or if the 
+	 * coordinates are outside the frame
+	 */
+	public int getRGB(int frameIndex, int x, int y) throws IndexOutOfBoundsException
+	{
+		checkFrameIndex(frameIndex);
+		if (x < 0 || y < 0 || x >= this.frameWidth || y >= this.frameHeight)
+			throw new IndexOutOfBoundsException("Coordinate (" + x + ", " + y + 
+					") is outside the frame of size " + this.frameWidth + "x" + this.frameHeight);
+		
+		int argb = this.pixels.get(frameIndex * this.frameWidth * this.frameHeight + 
+				y * this.frameWidth + x);
+		
+		if (!this.premultiplied)
+			return argb;
+		
+		// Premultiplied values are converted back to plain argb
+		int alpha = argb >>> 24;
+		if (alpha == 0)
+			return 0;
+		else if (alpha == 255)
+			return argb;
+		
+		int red = Math.min(255, ((argb >> 16) & 0xff) * 255 / alpha);
+		int green = Math.min(255, ((argb >> 8) & 0xff) * 255 / alpha);
+		int blue = Math.min(255, (argb & 0xff) * 255 / alpha);
+		return (alpha << 24) | (red << 16) | (green << 8) | blue;
+	}
+	
+	private void checkFrameIndex(int frameIndex)
+	{
+		if (frameIndex < 0 || frameIndex >= this.length)
+			throw new IndexOutOfBoundsException("Frame index " + frameIndex + 
+					" is outside the range [0, " + this.length + "[");
+	}
+	
+	// The size of the pixel data in bytes. Buffers are limited to int sizes.
+	private static int byteSize(int length, int frameWidth, int frameHeight)
+	{
+		if (length < 0 || frameWidth < 0 || frameHeight < 0)
+			throw new IllegalArgumentException("Negative frame amount or size");
+		
+		long size = (long) length * frameWidth * frameHeight * 4;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(length + " frames of size " + frameWidth + "x" + 
+					frameHeight + " don't fit into a single buffer");
+		return (int) size;
+	}
+}
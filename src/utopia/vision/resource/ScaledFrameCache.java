@@ -0,0 +1,203 @@
+package utopia.vision.resource;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+import utopia.vision.util.ImageCache;
+
+/**
+ * The scaled frame cache holds pre-scaled versions of sprite frames so that a sprite drawn at a
+ * stable scale only needs to be copied to the screen instead of being resampled on each draw.
+ * The cache is disabled by default. The source frames are referenced weakly, so the cache 
+ * doesn't keep the frames of lazily decoded sprites in memory. The scaled versions of 
+ * collected frames are removed from the cache.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class ScaledFrameCache
+{
+	// ATTRIBUTES	-----------------
+	
+	/**
+	 * The default memory budget of the cache, in bytes
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64 * 1024 * 1024;
+	
+	private static ImageCache<Key> cache = null;
+	private static final ReferenceQueue<BufferedImage> COLLECTED_SOURCES = 
+			new ReferenceQueue<>();
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private ScaledFrameCache()
+	{
+		// Static interface
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Enables the cache using the default memory budget
+	 */
+	public static void enable()
+	{
+		enable(DEFAULT_MEMORY_BUDGET);
+	}
+	
+	/**
+	 * Enables the cache. If the cache is already enabled, only the memory budget is changed.
+	 * @param maxBytes The maximum amount of scaled image data held in memory, in bytes
+	 */
+	public static synchronized void enable(long maxBytes)
+	{
+		if (cache == null)
+			cache = new ImageCache<>(maxBytes);
+		else
+			cache.setMaxBytes(maxBytes);
+	}
+	
+	/**
+	 * Disables the cache and releases all scaled frames
+	 */
+	public static synchronized void disable()
+	{
+		cache = null;
+	}
+	
+	/**
+	 * @return Whether sprites are currently drawn using pre-scaled frames
+	 */
+	public static boolean isEnabled()
+	{
+		return cache != null;
+	}
+	
+	/**
+	 * Removes the scaled versions of an image. This must be done before the pixels of the 
+	 * image are replaced.
+	 * @param image The image whose scaled versions are removed
+	 */
+	static void invalidate(BufferedImage image)
+	{
+		ImageCache<Key> cache = ScaledFrameCache.cache;
+		if (cache != null)
+			cache.removeIf(key -> key.get() == image);
+	}
+	
+	/**
+	 * Finds a pre-scaled version of an image, scaling and caching the image if necessary
+	 * @param image The unscaled image
+	 * @param xScale The horizontal scaling applied to the image
+	 * @param yScale The vertical scaling applied to the image
+	 * @param g2d The graphics object the image will be drawn with. The interpolation hint of
+	 * the object is used when scaling.
+	 * @return The scaled image or null if the cache is disabled or the image can't be
+	 * pre-scaled
+	 */
+	static BufferedImage getScaled(BufferedImage image, double xScale, double yScale,
+			Graphics2D g2d)
+	{
+		ImageCache<Key> cache = ScaledFrameCache.cache;
+		if (cache == null || xScale <= 0 || yScale <= 0)
+			return null;
+		
+		int width = (int) Math.round(image.getWidth() * xScale);
+		int height = (int) Math.round(image.getHeight() * yScale);
+		if (width <= 0 || height <= 0)
+			return null;
+		
+		Object interpolation = g2d.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+		if (interpolation == null)
+			interpolation = RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+		
+		removeCollected(cache);
+		
+		BufferedImage scaled = cache.get(new Key(image, width, height, interpolation, null));
+		if (scaled == null)
+		{
+			scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D scaledG2d = scaled.createGraphics();
+			scaledG2d.setComposite(AlphaComposite.Src);
+			scaledG2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+			scaledG2d.drawImage(image, 0, 0, width, height, null);
+			scaledG2d.dispose();
+			
+			cache.put(new Key(image, width, height, interpolation, COLLECTED_SOURCES), scaled);
+		}
+		
+		return scaled;
+	}
+	
+	private static void removeCollected(ImageCache<Key> cache)
+	{
+		Reference<? extends BufferedImage> collected = COLLECTED_SOURCES.poll();
+		while (collected != null)
+		{
+			cache.remove((Key) collected);
+			collected = COLLECTED_SOURCES.poll();
+		}
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	// The key refers to the source image weakly and is queued once the source is collected
+	private static class Key extends WeakReference<BufferedImage>
+	{
+		// ATTRIBUTES	-------------
+		
+		private int width, height, hashCode;
+		private Object interpolation;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public Key(BufferedImage source, int width, int height, Object interpolation, 
+				ReferenceQueue<BufferedImage> queue)
+		{
+			super(source, queue);
+			this.width = width;
+			this.height = height;
+			this.interpolation = interpolation;
+			
+			// The hash code can't change when the source is collected
+			int result = System.identityHashCode(source);
+			result = 31 * result + this.width;
+			result = 31 * result + this.height;
+			result = 31 * result + this.interpolation.hashCode();
+			this.hashCode = result;
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public int hashCode()
+		{
+			return this.hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			
+			Key other = (Key) obj;
+			// Source images are compared by identity. Keys whose source has been collected 
+			// only equal themselves.
+			BufferedImage source = get();
+			return source != null && source == other.get() && this.width == other.width &&
+					this.height == other.height && this.interpolation.equals(other.interpolation);
+		}
+	}
+}
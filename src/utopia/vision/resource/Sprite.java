@@ -4,17 +4,20 @@ import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-
-import javax.imageio.ImageIO;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicReference;
 
 import utopia.genesis.util.Vector3D;
+import utopia.vision.util.CompatibleImages;
 
 
 /**
  * A sprite represents a drawn image that can be animated. The sprite class does not handle 
- * animation or other mutable effects, but is an immutable struct.
+ * animation or other mutable effects, but is an immutable struct. The only exception is 
+ * packing the sprite into a {@link SpriteAtlas}, which replaces the frames of the sprite and 
+ * all of its copies with the atlas' frames. The frames are replaced as a whole, so other 
+ * threads may keep drawing the sprite at the same time.
  * @author Mikko Hilpinen.
  * @since 27.11.2012.
  */
@@ -27,7 +30,13 @@ public class Sprite
 	 */
 	public static final double DEFAULT_ANIMATION_SPEED_PER_SECOND = 15;
 	
-	private BufferedImage[] images;
+	private static volatile boolean compatibleFramesUsed = false;
+	private static volatile boolean lazyLoadingUsed = false;
+	private static volatile boolean offHeapStorageUsed = false;
+	
+	// The frames are shared between the copies of this sprite
+	private AtomicReference<Frames> frames;
+	private boolean reversed = false;
 	private Vector3D origin, originalSize;
 	private File sourceFile;
 	
@@ -69,47 +78,154 @@ public class Sprite
 		this.animationSpeed = defaultAnimationSpeed;
 	}
 	
+	/**
+	 * Creates a new lazy sprite. The sprite's frames are read from the source only when they 
+	 * are needed and they are kept in the {@link DecodedFrameCache} afterwards.
+	 * @param source The source that provides the sprite's frames
+	 * @param origin The sprite's origin's coordinates (relative). Use null for centered origin.
+	 * @param size The sprite's in-game size. Null for original image size.
+	 * @param defaultAnimationSpeed The default animation speed used with the sprite (frames per 
+	 * second. Default 15)
+	 * @throws IOException If the frame size couldn't be read from the source
+	 */
+	public Sprite(FrameSource source, Vector3D origin, Vector3D size, 
+			double defaultAnimationSpeed) throws IOException
+	{
+		initialiseLazy(source, origin);
+		
+		if (size != null)
+			this.scaling = size.dividedBy(this.originalSize);
+		this.animationSpeed = defaultAnimationSpeed;
+	}
+	
 	// Copies another sprite
 	private Sprite(Sprite other)
 	{
-		this.images = other.images;
+		this.frames = other.frames;
+		this.reversed = other.reversed;
 		this.origin = other.origin;
 		this.originalSize = other.originalSize;
+		this.sourceFile = other.sourceFile;
 		this.scaling = other.scaling;
+		this.animationSpeed = other.animationSpeed;
 	}
 	
 	private void loadSprite(File file, int stripLength, Vector3D origin) throws IOException
 	{
-		if (file == null || !file.exists())
-			throw new FileNotFoundException("Image file " + file + " doesn't exist");
-		if (stripLength < 1)
-			stripLength = 1;
-		
+		StripFrameSource source = new StripFrameSource(file, stripLength);
 		this.sourceFile = file;
-		this.origin = origin;
-		
-		// Loads the image
-		BufferedImage strip = ImageIO.read(file);
 		
-		// Creates the subimages
-		this.images = new BufferedImage[stripLength];
-		this.originalSize = new Vector3D(strip.getWidth() / stripLength, strip.getHeight());
+		// Off-heap sprites copy the frames outside the heap and create the images on demand
+		if (offHeapStorageUsed)
+		{
+			initialiseLazy(OffHeapFrameSource.load(file, stripLength), origin);
+			return;
+		}
 		
-		for (int i = 0; i < stripLength; i++)
-		{	
-			this.images[i] = strip.getSubimage(i * this.originalSize.getXInt(), 0, 
-					this.originalSize.getXInt(), this.originalSize.getYInt());
+		// Lazy sprites only read the strip size at this point
+		if (lazyLoadingUsed)
+		{
+			initialiseLazy(source, origin);
+			return;
 		}
 		
+		this.origin = origin;
+		
+		// Loads the image and creates the subimages
+		BufferedImage[] images = source.readFrames();
+		this.frames = new AtomicReference<>(new Frames(images, null, null));
+		this.originalSize = new Vector3D(images[0].getWidth(), images[0].getHeight());
+		
 		// If an origin position was set to null, sets it to the middle of the 
 		// sprite
 		if (this.origin == null)
 			this.origin = this.originalSize.dividedBy(2);
 	}
 	
+	private void initialiseLazy(FrameSource source, Vector3D origin) throws IOException
+	{
+		this.frames = new AtomicReference<>(new Frames(null, null, source));
+		this.sourceFile = source.getSourceFile();
+		this.originalSize = new Vector3D(source.getFrameWidth(), source.getFrameHeight());
+		
+		if (origin == null)
+			this.origin = this.originalSize.dividedBy(2);
+		else
+			this.origin = origin;
+	}
+	
 	
 	// GETTERS & SETTERS	------------------------------------------------
 	
+	/**
+	 * Changes how the frames of the sprites are stored once loaded. By default, the frames 
+	 * are views to the loaded strip image and keep its pixel layout. When compatible frames 
+	 * are used, each frame is copied into a separate image that uses the fastest pixel 
+	 * layout of the screen (see {@link CompatibleImages}), which allows Java2D to accelerate 
+	 * the frames. This affects only the sprites loaded afterwards.
+	 * @param useCompatibleFrames Should the sprites loaded from now on use compatible frames
+	 */
+	public static void setCompatibleFramesUsed(boolean useCompatibleFrames)
+	{
+		compatibleFramesUsed = useCompatibleFrames;
+	}
+	
+	/**
+	 * @return Whether the sprites are currently loaded using compatible frames
+	 * @see #setCompatibleFramesUsed(boolean)
+	 */
+	public static boolean compatibleFramesAreUsed()
+	{
+		return compatibleFramesUsed;
+	}
+	
+	/**
+	 * Changes whether the sprites loaded from files are lazy. Lazy sprites read only the size 
+	 * of the strip when they're created. Their frames are decoded when first drawn and kept 
+	 * in the {@link DecodedFrameCache}, which limits the amount of memory used by the frames. 
+	 * This affects only the sprites loaded afterwards.
+	 * @param useLazyLoading Should the sprites loaded from now on be lazy
+	 */
+	public static void setLazyLoadingUsed(boolean useLazyLoading)
+	{
+		lazyLoadingUsed = useLazyLoading;
+	}
+	
+	/**
+	 * @return Whether the sprites loaded from files are currently lazy
+	 * @see #setLazyLoadingUsed(boolean)
+	 */
+	public static boolean lazyLoadingIsUsed()
+	{
+		return lazyLoadingUsed;
+	}
+	
+	/**
+	 * Changes whether the sprites loaded from files keep their pixels outside the java heap. 
+	 * The pixels of such sprites are stored in direct buffers (see 
+	 * {@link OffHeapFrameSource}), which keeps them out of the garbage collector's way. 
+	 * Images are created from the pixels only when the frames are drawn, and they're kept in 
+	 * the {@link DecodedFrameCache}. Notice that the amount of direct memory available may 
+	 * need to be raised with -XX:MaxDirectMemorySize. This affects only the sprites loaded 
+	 * afterwards and takes precedence over lazy loading.
+	 * @param useOffHeapStorage Should the sprites loaded from now on store their pixels 
+	 * outside the heap
+	 */
+	public static void setOffHeapStorageUsed(boolean useOffHeapStorage)
+	{
+		offHeapStorageUsed = useOffHeapStorage;
+	}
+	
+	/**
+	 * @return Whether the sprites loaded from files currently store their pixels outside the 
+	 * java heap
+	 * @see #setOffHeapStorageUsed(boolean)
+	 */
+	public static boolean offHeapStorageIsUsed()
+	{
+		return offHeapStorageUsed;
+	}
+	
 	/**
 	 * @return The sprite's origin's coordinates (relative). 
 	 * Notice that this is the scaled value.
@@ -140,7 +256,7 @@ public class Sprite
 	 */
 	public int getLength()
 	{
-		return this.images.length;
+		return this.frames.get().getLength();
 	}
 	
 	/**
@@ -160,6 +276,64 @@ public class Sprite
 		return this.animationSpeed;
 	}
 	
+	/**
+	 * @return Whether the frames of this sprite are drawn from a sprite atlas
+	 * @see SpriteAtlas
+	 */
+	public boolean isInAtlas()
+	{
+		return this.frames.get().atlasRegions != null;
+	}
+	
+	/**
+	 * @return Whether the frames of this sprite are read on demand instead of being held by 
+	 * the sprite
+	 * @see #setLazyLoadingUsed(boolean)
+	 */
+	public boolean isLazy()
+	{
+		return this.frames.get().images == null;
+	}
+	
+	// The atlas region of a frame. Null if the sprite isn't in an atlas.
+	SpriteAtlas.Region getAtlasRegion(int frameIndex)
+	{
+		Frames frames = this.frames.get();
+		if (frames.atlasRegions == null)
+			return null;
+		else
+			return frames.atlasRegions[getSourceIndex(frameIndex, frames.getLength())];
+	}
+	
+	// The object that holds the frames shared by this sprite and its copies
+	Object getFrameStore()
+	{
+		return this.frames;
+	}
+	
+	// Makes the sprite and its copies use the provided atlas regions (in this sprite's frame 
+	// order) instead of their own images. Returns false if the sprite was already in an atlas.
+	boolean setAtlasRegions(SpriteAtlas.Region[] regions)
+	{
+		Frames current = this.frames.get();
+		if (current.atlasRegions != null)
+			return false;
+		
+		// The regions are stored in the original frame order, since the copies may be 
+		// reversed. The frames are read from the atlas from now on, so that the original 
+		// strip may be released.
+		SpriteAtlas.Region[] sourceRegions = new SpriteAtlas.Region[regions.length];
+		BufferedImage[] images = new BufferedImage[regions.length];
+		for (int i = 0; i < regions.length; i++)
+		{
+			int sourceIndex = getSourceIndex(i, regions.length);
+			sourceRegions[sourceIndex] = regions[i];
+			images[sourceIndex] = regions[i].getImage();
+		}
+		
+		return this.frames.compareAndSet(current, new Frames(images, sourceRegions, null));
+	}
+	
 	
 	// OTHER METHODS	------------------------------------------------------------
 	
@@ -172,13 +346,49 @@ public class Sprite
 	 */
 	public BufferedImage getFrame(int imageIndex)
 	{
-		// Loops the index to correct range
-		while (imageIndex < 0)
-		{
-			imageIndex += getLength();
-		}
+		Frames frames = this.frames.get();
+		int index = getSourceIndex(imageIndex, frames.getLength());
+		if (frames.images != null)
+			return frames.images[index];
 		
-		return this.images[imageIndex % getLength()];
+		// Lazy sprites read the frames through the cache
+		return DecodedFrameCache.getFrame(frames.source, index);
+	}
+	
+	/**
+	 * Provides a read-only view to the pixels of a single frame without creating any images. 
+	 * This is only possible for sprites that store their pixels outside the heap.
+	 * @param imageIndex The index of the image [0, length[. Indices will be looped.
+	 * @return The pixels of the frame, row by row, or null if the sprite doesn't store its 
+	 * pixels outside the heap
+	 * @see OffHeapFrameSource#getPixels(int)
+	 */
+	public IntBuffer getPixels(int imageIndex)
+	{
+		Frames frames = this.frames.get();
+		if (frames.source instanceof OffHeapFrameSource)
+			return ((OffHeapFrameSource) frames.source).getPixels(
+					getSourceIndex(imageIndex, frames.getLength()));
+		else
+			return null;
+	}
+	
+	/**
+	 * Reads a single pixel from a frame. Sprites that store their pixels outside the heap 
+	 * read the pixel without creating any images.
+	 * @param imageIndex The index of the image [0, length[. Indices will be looped.
+	 * @param x The x-coordinate of the pixel (unscaled)
+	 * @param y The y-coordinate of the pixel (unscaled)
+	 * @return The pixel in (not premultiplied) ARGB format
+	 */
+	public int getRGB(int imageIndex, int x, int y)
+	{
+		Frames frames = this.frames.get();
+		if (frames.source instanceof OffHeapFrameSource)
+			return ((OffHeapFrameSource) frames.source).getRGB(
+					getSourceIndex(imageIndex, frames.getLength()), x, y);
+		else
+			return getFrame(imageIndex).getRGB(x, y);
 	}
 	
 	/**
@@ -221,13 +431,9 @@ public class Sprite
 	 */
 	public Sprite reverse()
 	{
+		// The frames are shared, so the reversed sprite simply reads them in reverse order
 		Sprite s = new Sprite(this);
-		
-		for(int i = 0; i < this.images.length; i++)
-		{
-			s.images[i] = this.images[this.images.length - 1 - i];
-		}
-		
+		s.reversed = !this.reversed;
 		return s;
 	}
 	
@@ -243,11 +449,27 @@ public class Sprite
 		if (origin == null)
 			origin = sprite.getOrigin();
 		
-		drawImage(sprite.getFrame(frameIndex), origin, sprite.getScaling(), g2d);
+		// Atlas sprites are drawn straight from the atlas pages, unless pre-scaled frames 
+		// are used
+		Frames frames = sprite.frames.get();
+		if (frames.atlasRegions != null && 
+				(!ScaledFrameCache.isEnabled() || sprite.getScaling().equalsIn2D(Vector3D.IDENTITY)))
+		{
+			AffineTransform lastTransform = g2d.getTransform();
+			
+			g2d.translate(-origin.getX(), -origin.getY());
+			g2d.scale(sprite.getScaling().getX(), sprite.getScaling().getY());
+			frames.atlasRegions[sprite.getSourceIndex(frameIndex, frames.getLength())].draw(g2d);
+			
+			g2d.setTransform(lastTransform);
+		}
+		else
+			drawImage(sprite.getFrame(frameIndex), origin, sprite.getScaling(), g2d);
 	}
 	
 	/**
-	 * Draws an image
+	 * Draws an image. If the {@link ScaledFrameCache} is enabled, a pre-scaled version of the 
+	 * image is drawn instead.
 	 * @param image the image that is drawn
 	 * @param origin The origin of the image
 	 * @param scaling The scaling applied to the image
@@ -261,12 +483,81 @@ public class Sprite
 		// Moves the sprite according to its origin
 		g2d.translate(-origin.getX(), -origin.getY());
 		
-		// Scales the sprite according to it's status
-		g2d.scale(scaling.getX(), scaling.getY());
+		// Uses a pre-scaled image if possible
+		BufferedImage scaled = null;
+		if (!scaling.equalsIn2D(Vector3D.IDENTITY))
+			scaled = ScaledFrameCache.getScaled(image, scaling.getX(), scaling.getY(), g2d);
 		
-		// Draws the image
-		g2d.drawImage(image, 0, 0, null);
+		if (scaled != null)
+			g2d.drawImage(scaled, 0, 0, null);
+		else
+		{
+			// Scales the sprite according to it's status
+			g2d.scale(scaling.getX(), scaling.getY());
+			
+			// Draws the image
+			g2d.drawImage(image, 0, 0, null);
+		}
 		
 		g2d.setTransform(lastTransform);
 	}
+	
+	// Finds the index of a frame in the shared frames
+	private int getSourceIndex(int imageIndex, int length)
+	{
+		int index = loopIndex(imageIndex, length);
+		if (this.reversed)
+			return length - 1 - index;
+		else
+			return index;
+	}
+	
+	// Loops the index to correct range
+	private static int loopIndex(int index, int length)
+	{
+		while (index < 0)
+		{
+			index += length;
+		}
+		
+		return index % length;
+	}
+	
+	
+	// NESTED CLASSES	--------------------------------------------------------
+	
+	// The frames are always replaced as a whole, so that a sprite is never seen half updated
+	private static class Frames
+	{
+		// ATTRIBUTES	-----------------
+		
+		// Null for lazy sprites
+		private final BufferedImage[] images;
+		// Null if the frames aren't in an atlas
+		private final SpriteAtlas.Region[] atlasRegions;
+		// Null unless the sprite is lazy
+		private final FrameSource source;
+		
+		
+		// CONSTRUCTOR	-----------------
+		
+		public Frames(BufferedImage[] images, SpriteAtlas.Region[] atlasRegions, 
+				FrameSource source)
+		{
+			this.images = images;
+			this.atlasRegions = atlasRegions;
+			this.source = source;
+		}
+		
+		
+		// ACCESSORS	-----------------
+		
+		public int getLength()
+		{
+			if (this.images == null)
+				return this.source.getLength();
+			else
+				return this.images.length;
+		}
+	}
 }
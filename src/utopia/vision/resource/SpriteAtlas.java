@@ -0,0 +1,392 @@
+package utopia.vision.resource;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A sprite atlas packs the frames of multiple sprites into a few large pages. Sprites that
+ * have been packed draw their frames from the atlas pages, which means that consecutive draw
+ * calls use the same source surfaces and Java2D can cache them far more effectively.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class SpriteAtlas
+{
+	// ATTRIBUTES	-----------------
+	
+	/**
+	 * The default width and height of a single atlas page in pixels
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 2048;
+	
+	private static final int PADDING = 1;
+	
+	private int pageWidth, pageHeight;
+	private List<Page> pages = new ArrayList<>();
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new empty atlas that uses pages of the default size
+	 */
+	public SpriteAtlas()
+	{
+		this.pageWidth = DEFAULT_PAGE_SIZE;
+		this.pageHeight = DEFAULT_PAGE_SIZE;
+	}
+	
+	/**
+	 * Creates a new empty atlas
+	 * @param pageWidth The width of a single atlas page in pixels
+	 * @param pageHeight The height of a single atlas page in pixels
+	 */
+	public SpriteAtlas(int pageWidth, int pageHeight)
+	{
+		this.pageWidth = pageWidth;
+		this.pageHeight = pageHeight;
+	}
+	
+	/**
+	 * Creates a new atlas that contains the frames of all of the provided sprites. The sprites
+	 * will be drawn from the atlas afterwards.
+	 * @param sprites The sprites that are packed
+	 * @return An atlas containing the sprites' frames
+	 */
+	public static SpriteAtlas pack(Collection<? extends Sprite> sprites)
+	{
+		SpriteAtlas atlas = new SpriteAtlas();
+		atlas.add(sprites);
+		return atlas;
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return The pages in this atlas. The returned list is read-only.
+	 */
+	public List<BufferedImage> getPages()
+	{
+		List<BufferedImage> images = new ArrayList<>(this.pages.size());
+		for (Page page : this.pages)
+		{
+			images.add(page.image);
+		}
+		return Collections.unmodifiableList(images);
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Packs the frames of the provided sprites into this atlas. The frames are packed from the
+	 * tallest to the shortest, which keeps the pages dense. Sprites that have already been
+	 * packed into an atlas and sprites with frames that don't fit on a single page are skipped.
+	 * The provided sprites and all of their copies will use the atlas, including the copies 
+	 * created before packing.
+	 * @param sprites The sprites that are packed
+	 */
+	public void add(Collection<? extends Sprite> sprites)
+	{
+		// Collects all the frames (the frames shared by a sprite's copies only once)
+		Map<Sprite, Region[]> regions = new IdentityHashMap<>();
+		Set<Object> frameStores = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<PendingFrame> frames = new ArrayList<>();
+		for (Sprite sprite : sprites)
+		{
+			if (sprite == null || sprite.isInAtlas() || frameStores.contains(sprite.getFrameStore()))
+				continue;
+			BufferedImage firstFrame = sprite.getFrame(0);
+			if (firstFrame.getWidth() + PADDING > this.pageWidth || 
+					firstFrame.getHeight() + PADDING > this.pageHeight)
+				continue;
+			
+			frameStores.add(sprite.getFrameStore());
+			regions.put(sprite, new Region[sprite.getLength()]);
+			for (int i = 0; i < sprite.getLength(); i++)
+			{
+				frames.add(new PendingFrame(sprite, i));
+			}
+		}
+		
+		// Places the frames, tallest first
+		frames.sort((a, b) -> b.image.getHeight() - a.image.getHeight());
+		for (PendingFrame frame : frames)
+		{
+			regions.get(frame.sprite)[frame.index] = place(frame.image);
+		}
+		for (Page page : this.pages)
+		{
+			page.finishPacking();
+		}
+		
+		// Makes the sprites use the atlas
+		for (Map.Entry<Sprite, Region[]> entry : regions.entrySet())
+		{
+			entry.getKey().setAtlasRegions(entry.getValue());
+		}
+	}
+	
+	private Region place(BufferedImage frame)
+	{
+		int width = frame.getWidth() + PADDING;
+		int height = frame.getHeight() + PADDING;
+		
+		// Uses the first page that has room for the frame, creates a new page if necessary
+		for (Page page : this.pages)
+		{
+			Region region = page.place(frame, width, height);
+			if (region != null)
+				return region;
+		}
+		
+		Page page = new Page(this.pageWidth, this.pageHeight);
+		this.pages.add(page);
+		return page.place(frame, width, height);
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	/**
+	 * A region is an area of an atlas page that contains a single sprite frame
+	 * @author Mikko Hilpinen
+	 * @since 16.10.2026
+	 */
+	public static class Region
+	{
+		// ATTRIBUTES	-------------
+		
+		private BufferedImage page, image;
+		private int x, y, width, height;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		private Region(BufferedImage page, int x, int y, int width, int height)
+		{
+			this.page = page;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			
+			this.image = page.getSubimage(x, y, width, height);
+		}
+		
+		
+		// ACCESSORS	-------------
+		
+		/**
+		 * @return The atlas page this region is located at
+		 */
+		public BufferedImage getPage()
+		{
+			return this.page;
+		}
+		
+		/**
+		 * @return A view to the region's pixels. The view shares the data of the page.
+		 */
+		public BufferedImage getImage()
+		{
+			return this.image;
+		}
+		
+		/**
+		 * @return The x-coordinate of the region's top left corner on the page
+		 */
+		public int getX()
+		{
+			return this.x;
+		}
+		
+		/**
+		 * @return The y-coordinate of the region's top left corner on the page
+		 */
+		public int getY()
+		{
+			return this.y;
+		}
+		
+		/**
+		 * @return The width of the region
+		 */
+		public int getWidth()
+		{
+			return this.width;
+		}
+		
+		/**
+		 * @return The height of the region
+		 */
+		public int getHeight()
+		{
+			return this.height;
+		}
+		
+		
+		// OTHER METHODS	---------
+		
+		/**
+		 * Draws the region so that its top left corner is placed at (0, 0)
+		 * @param g2d The graphics object used for the drawing
+		 */
+		public void draw(Graphics2D g2d)
+		{
+			g2d.drawImage(this.page, 0, 0, this.width, this.height, this.x, this.y,
+					this.x + this.width, this.y + this.height, null);
+		}
+	}
+	
+	// A page uses a skyline to keep track of the free space
+	private static class Page
+	{
+		// ATTRIBUTES	-------------
+		
+		private BufferedImage image;
+		// The graphics object is only held while frames are being packed
+		private Graphics2D g2d = null;
+		// Each skyline segment is {x, y, width}
+		private List<int[]> skyline = new ArrayList<>();
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public Page(int width, int height)
+		{
+			this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			this.skyline.add(new int[] {0, 0, width});
+		}
+		
+		
+		// OTHER METHODS	---------
+		
+		public Region place(BufferedImage frame, int width, int height)
+		{
+			// Finds the position where the top of the placed frame would be lowest
+			int bestIndex = -1, bestY = Integer.MAX_VALUE, bestWidth = Integer.MAX_VALUE;
+			for (int i = 0; i < this.skyline.size(); i++)
+			{
+				int y = fitAt(i, width, height);
+				if (y >= 0)
+				{
+					int[] segment = this.skyline.get(i);
+					if (y + height < bestY || (y + height == bestY && segment[2] < bestWidth))
+					{
+						bestIndex = i;
+						bestY = y + height;
+						bestWidth = segment[2];
+					}
+				}
+			}
+			
+			if (bestIndex < 0)
+				return null;
+			
+			int x = this.skyline.get(bestIndex)[0];
+			int y = bestY - height;
+			addSegment(bestIndex, x, bestY, width);
+			
+			if (this.g2d == null)
+			{
+				this.g2d = this.image.createGraphics();
+				// Frames are copied as they are, without blending
+				this.g2d.setComposite(AlphaComposite.Src);
+			}
+			this.g2d.drawImage(frame, x, y, null);
+			return new Region(this.image, x, y, frame.getWidth(), frame.getHeight());
+		}
+		
+		public void finishPacking()
+		{
+			if (this.g2d != null)
+			{
+				this.g2d.dispose();
+				this.g2d = null;
+			}
+		}
+		
+		// Returns the y-coordinate where the rectangle would be placed or -1 if it doesn't fit
+		private int fitAt(int index, int width, int height)
+		{
+			int x = this.skyline.get(index)[0];
+			if (x + width > this.image.getWidth())
+				return -1;
+			
+			int y = 0;
+			int remaining = width;
+			while (remaining > 0)
+			{
+				int[] segment = this.skyline.get(index);
+				y = Math.max(y, segment[1]);
+				if (y + height > this.image.getHeight())
+					return -1;
+				remaining -= segment[2];
+				index ++;
+			}
+			
+			return y;
+		}
+		
+		private void addSegment(int index, int x, int y, int width)
+		{
+			this.skyline.add(index, new int[] {x, y, width});
+			
+			// Shrinks or removes the segments now covered by the new one
+			int end = x + width;
+			while (index + 1 < this.skyline.size())
+			{
+				int[] next = this.skyline.get(index + 1);
+				if (next[0] >= end)
+					break;
+				
+				int overlap = end - next[0];
+				if (overlap >= next[2])
+					this.skyline.remove(index + 1);
+				else
+				{
+					next[0] += overlap;
+					next[2] -= overlap;
+					break;
+				}
+			}
+			
+			// Merges adjacent segments at the same height
+			for (int i = 0; i < this.skyline.size() - 1; i++)
+			{
+				int[] current = this.skyline.get(i);
+				int[] next = this.skyline.get(i + 1);
+				if (current[1] == next[1])
+				{
+					current[2] += next[2];
+					this.skyline.remove(i + 1);
+					i --;
+				}
+			}
+		}
+	}
+	
+	private static class PendingFrame
+	{
+		private Sprite sprite;
+		private int index;
+		private BufferedImage image;
+		
+		public PendingFrame(Sprite sprite, int index)
+		{
+			this.sprite = sprite;
+			this.index = index;
+			this.image = sprite.getFrame(index);
+		}
+	}
+}
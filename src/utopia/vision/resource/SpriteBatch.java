@@ -0,0 +1,326 @@
+package utopia.vision.resource;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import utopia.genesis.util.Transformation;
+import utopia.genesis.util.Vector3D;
+
+/**
+ * A sprite batch collects the sprite draws of a single frame and then draws them all at 
+ * once. The draws are sorted by depth and then by their source image, so that consecutive 
+ * draws use the same image or atlas page as often as possible. The transformations of each 
+ * draw are combined when the draw is added, and the state of the graphics object is changed 
+ * only when necessary. Draws that only move the sprite by whole pixels don't change the 
+ * transformation at all. The draws with the same depth may be drawn in any order. The 
+ * pre-scaled frames of the {@link ScaledFrameCache} are not used by the batch.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class SpriteBatch
+{
+	// ATTRIBUTES	-----------------
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private int size = 0;
+	// The drawn image is either a frame or an atlas page, in which case the region is used
+	private BufferedImage[] images = new BufferedImage[INITIAL_CAPACITY];
+	private int[] regions = new int[INITIAL_CAPACITY * 4];
+	private double[] transforms = new double[INITIAL_CAPACITY * 6];
+	private float[] alphas = new float[INITIAL_CAPACITY];
+	private int[] depths = new int[INITIAL_CAPACITY];
+	private int[] sourceKeys = new int[INITIAL_CAPACITY];
+	
+	private int[] order = new int[INITIAL_CAPACITY];
+	private int[] sortBuffer = new int[INITIAL_CAPACITY];
+	
+	private AffineTransform drawTransform = new AffineTransform();
+	private AffineTransform commandTransform = new AffineTransform();
+	private Graphics2D transformationTarget = null;
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return How many draws are waiting in this batch
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Adds a sprite draw to the batch
+	 * @param sprite The sprite that is drawn
+	 * @param frameIndex The index of the drawn frame
+	 * @param origin The origin that is used. Null for the sprite's default origin.
+	 * @param transform The transformation applied to the sprite. Null if the sprite isn't 
+	 * transformed.
+	 * @param alpha The alpha (opacity) of the drawn sprite [0, 1]
+	 * @param depth The drawing depth of the sprite. The draws with higher depth are drawn 
+	 * first.
+	 */
+	public void draw(Sprite sprite, int frameIndex, Vector3D origin, AffineTransform transform, 
+			float alpha, int depth)
+	{
+		if (origin == null)
+			origin = sprite.getOrigin();
+		
+		SpriteAtlas.Region region = sprite.getAtlasRegion(frameIndex);
+		if (region == null)
+		{
+			BufferedImage frame = sprite.getFrame(frameIndex);
+			add(frame, 0, 0, frame.getWidth(), frame.getHeight(), origin, sprite.getScaling(), 
+					transform, alpha, depth);
+		}
+		else
+			add(region.getPage(), region.getX(), region.getY(), region.getWidth(), 
+					region.getHeight(), origin, sprite.getScaling(), transform, alpha, depth);
+	}
+	
+	/**
+	 * Adds the current frame of a sprite drawer to the batch. The drawer's filters are 
+	 * respected.
+	 * @param drawer The drawer whose sprite is drawn
+	 * @param transform The transformation applied to the sprite. Null if the sprite isn't 
+	 * transformed.
+	 * @param alpha The alpha (opacity) of the drawn sprite [0, 1]
+	 * @param depth The drawing depth of the sprite. The draws with higher depth are drawn 
+	 * first.
+	 */
+	public void draw(SpriteDrawer drawer, AffineTransform transform, float alpha, int depth)
+	{
+		Sprite sprite = drawer.getSprite();
+		if (sprite == null)
+			return;
+		
+		int frameIndex = drawer.getFrameIndex();
+		BufferedImage filtered = drawer.getFilteredFrame(frameIndex);
+		if (filtered == null)
+			draw(sprite, frameIndex, drawer.getOrigin(), transform, alpha, depth);
+		else
+			add(filtered, 0, 0, filtered.getWidth(), filtered.getHeight(), drawer.getOrigin(), 
+					sprite.getScaling(), transform, alpha, depth);
+	}
+	
+	/**
+	 * Adds the current frame of a sprite drawer to the batch
+	 * @param drawer The drawer whose sprite is drawn
+	 * @param transformation The transformation of the object that is drawn
+	 * @param depth The drawing depth of the sprite. The draws with higher depth are drawn 
+	 * first.
+	 */
+	public void draw(SpriteDrawer drawer, Transformation transformation, int depth)
+	{
+		draw(drawer, toAffineTransform(transformation), 1, depth);
+	}
+	
+	/**
+	 * Draws all of the draws in the batch and empties the batch
+	 * @param g2d The graphics object used for the drawing. The state of the graphics object 
+	 * is restored afterwards.
+	 */
+	public void flush(Graphics2D g2d)
+	{
+		if (this.size == 0)
+			return;
+		
+		sort();
+		
+		AffineTransform baseTransform = g2d.getTransform();
+		Composite baseComposite = g2d.getComposite();
+		boolean transformChanged = false;
+		float alpha = 1;
+		
+		for (int i = 0; i < this.size; i++)
+		{
+			int command = this.order[i];
+			int t = command * 6;
+			
+			// The composite is only changed when the alpha changes
+			if (this.alphas[command] != alpha)
+			{
+				alpha = this.alphas[command];
+				g2d.setComposite(alpha == 1 ? baseComposite : 
+						AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+			}
+			
+			// Whole pixel movement is handled without transforming the graphics
+			int x = 0, y = 0;
+			if (isWholePixelTranslation(t))
+			{
+				if (transformChanged)
+				{
+					g2d.setTransform(baseTransform);
+					transformChanged = false;
+				}
+				x = (int) this.transforms[t + 4];
+				y = (int) this.transforms[t + 5];
+			}
+			else
+			{
+				this.commandTransform.setTransform(this.transforms[t], this.transforms[t + 1], 
+						this.transforms[t + 2], this.transforms[t + 3], this.transforms[t + 4], 
+						this.transforms[t + 5]);
+				this.drawTransform.setTransform(baseTransform);
+				this.drawTransform.concatenate(this.commandTransform);
+				g2d.setTransform(this.drawTransform);
+				transformChanged = true;
+			}
+			
+			int r = command * 4;
+			int sourceX = this.regions[r];
+			int sourceY = this.regions[r + 1];
+			int width = this.regions[r + 2];
+			int height = this.regions[r + 3];
+			g2d.drawImage(this.images[command], x, y, x + width, y + height, sourceX, sourceY, 
+					sourceX + width, sourceY + height, null);
+		}
+		
+		g2d.setTransform(baseTransform);
+		g2d.setComposite(baseComposite);
+		clear();
+	}
+	
+	/**
+	 * Removes all of the draws from the batch without drawing them
+	 */
+	public void clear()
+	{
+		// The images are released so that they don't stay in memory
+		Arrays.fill(this.images, 0, this.size, null);
+		this.size = 0;
+	}
+	
+	private void add(BufferedImage image, int sourceX, int sourceY, int width, int height, 
+			Vector3D origin, Vector3D scaling, AffineTransform transform, float alpha, 
+			int depth)
+	{
+		ensureCapacity(this.size + 1);
+		int command = this.size++;
+		
+		this.images[command] = image;
+		int r = command * 4;
+		this.regions[r] = sourceX;
+		this.regions[r + 1] = sourceY;
+		this.regions[r + 2] = width;
+		this.regions[r + 3] = height;
+		this.alphas[command] = alpha;
+		this.depths[command] = depth;
+		this.sourceKeys[command] = System.identityHashCode(image);
+		
+		// The transformation is combined with the origin and the scaling of the sprite
+		double m00 = 1, m10 = 0, m01 = 0, m11 = 1, m02 = 0, m12 = 0;
+		if (transform != null)
+		{
+			m00 = transform.getScaleX();
+			m10 = transform.getShearY();
+			m01 = transform.getShearX();
+			m11 = transform.getScaleY();
+			m02 = transform.getTranslateX();
+			m12 = transform.getTranslateY();
+		}
+		
+		double offsetX = -origin.getX();
+		double offsetY = -origin.getY();
+		int t = command * 6;
+		this.transforms[t] = m00 * scaling.getX();
+		this.transforms[t + 1] = m10 * scaling.getX();
+		this.transforms[t + 2] = m01 * scaling.getY();
+		this.transforms[t + 3] = m11 * scaling.getY();
+		this.transforms[t + 4] = m00 * offsetX + m01 * offsetY + m02;
+		this.transforms[t + 5] = m10 * offsetX + m11 * offsetY + m12;
+	}
+	
+	private boolean isWholePixelTranslation(int t)
+	{
+		return this.transforms[t] == 1 && this.transforms[t + 1] == 0 && 
+				this.transforms[t + 2] == 0 && this.transforms[t + 3] == 1 && 
+				this.transforms[t + 4] == Math.rint(this.transforms[t + 4]) && 
+				this.transforms[t + 5] == Math.rint(this.transforms[t + 5]);
+	}
+	
+	private AffineTransform toAffineTransform(Transformation transformation)
+	{
+		if (transformation == null)
+			return null;
+		
+		// The transformation is read by applying it to an empty graphics object
+		if (this.transformationTarget == null)
+			this.transformationTarget = 
+					new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+		this.transformationTarget.setTransform(new AffineTransform());
+		transformation.transform(this.transformationTarget);
+		return this.transformationTarget.getTransform();
+	}
+	
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity <= this.images.length)
+			return;
+		
+		int newCapacity = Math.max(capacity, this.images.length * 2);
+		this.images = Arrays.copyOf(this.images, newCapacity);
+		this.regions = Arrays.copyOf(this.regions, newCapacity * 4);
+		this.transforms = Arrays.copyOf(this.transforms, newCapacity * 6);
+		this.alphas = Arrays.copyOf(this.alphas, newCapacity);
+		this.depths = Arrays.copyOf(this.depths, newCapacity);
+		this.sourceKeys = Arrays.copyOf(this.sourceKeys, newCapacity);
+		this.order = new int[newCapacity];
+		this.sortBuffer = new int[newCapacity];
+	}
+	
+	// Sorts the draws by depth (descending), by source image and finally by the order they
+	// were added in. A merge sort is used so that no objects need to be created.
+	private void sort()
+	{
+		for (int i = 0; i < this.size; i++)
+		{
+			this.order[i] = i;
+		}
+		
+		int[] source = this.order;
+		int[] target = this.sortBuffer;
+		for (int width = 1; width < this.size; width *= 2)
+		{
+			for (int start = 0; start < this.size; start += 2 * width)
+			{
+				int middle = Math.min(start + width, this.size);
+				int end = Math.min(start + 2 * width, this.size);
+				
+				int i = start, j = middle;
+				for (int k = start; k < end; k++)
+				{
+					if (j >= end || (i < middle && compare(source[i], source[j]) <= 0))
+						target[k] = source[i++];
+					else
+						target[k] = source[j++];
+				}
+			}
+			
+			int[] swap = source;
+			source = target;
+			target = swap;
+		}
+		
+		this.order = source;
+		this.sortBuffer = target;
+	}
+	
+	private int compare(int first, int second)
+	{
+		if (this.depths[first] != this.depths[second])
+			return this.depths[first] > this.depths[second] ? -1 : 1;
+		if (this.sourceKeys[first] != this.sourceKeys[second])
+			return Integer.compare(this.sourceKeys[first], this.sourceKeys[second]);
+		return Integer.compare(first, second);
+	}
+}
@@ -0,0 +1,328 @@
+package utopia.vision.resource;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import utopia.genesis.util.Vector3D;
+
+/**
+ * The sprite cache stores decoded sprites in binary cache files so that the image files 
+ * don't need to be decoded again the next time the sprites are loaded. The cache files 
+ * contain the premultiplied pixels of the frames, along with the frame size, origin and 
+ * animation speed. They're memory mapped when read, so the frames can be drawn without 
+ * decompressing or copying the pixels. A cache file is no longer used once its source 
+ * image file has been modified.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class SpriteCache
+{
+	// ATTRIBUTES	-----------------
+	
+	/**
+	 * The file extension used for the cache files
+	 */
+	public static final String FILE_EXTENSION = ".vsc";
+	
+	private static final int MAGIC = 0x56534301;
+	private static final int VERSION = 1;
+	// The pixel data starts from an aligned position after the header
+	private static final int HEADER_SIZE = 64;
+	
+	private static volatile File directory = null;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private SpriteCache()
+	{
+		// Static interface
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * Changes the directory where the cache files are stored. The sprites loaded through 
+	 * {@link #load(File, int, Vector3D, Vector3D, double)} are cached only when a directory 
+	 * has been specified.
+	 * @param cacheDirectory The directory for the cache files. Null if the sprites shouldn't 
+	 * be cached.
+	 */
+	public static void setDirectory(File cacheDirectory)
+	{
+		directory = cacheDirectory;
+	}
+	
+	/**
+	 * @return The directory where the cache files are stored. Null if the sprites aren't 
+	 * cached.
+	 */
+	public static File getDirectory()
+	{
+		return directory;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Loads a sprite, using a cache file if there is an up-to-date one. If there isn't, the 
+	 * sprite is read from the image file and a cache file is written for the next time. If 
+	 * no cache directory has been specified, this works exactly like 
+	 * {@link Sprite#Sprite(File, int, Vector3D, Vector3D, double)}.
+	 * @param file The image file for the strip
+	 * @param stripLength How many separate images does the strip contain?
+	 * @param origin The sprite's origin's coordinates (relative). Use null for centered origin.
+	 * @param size The sprite's in-game size. Null for original image size.
+	 * @param defaultAnimationSpeed The default animation speed used with the sprite (frames per 
+	 * second)
+	 * @return The loaded sprite
+	 * @throws IOException If the sprite couldn't be read
+	 */
+	public static Sprite load(File file, int stripLength, Vector3D origin, Vector3D size, 
+			double defaultAnimationSpeed) throws IOException
+	{
+		File cacheDirectory = getDirectory();
+		if (cacheDirectory == null)
+			return new Sprite(file, stripLength, origin, size, defaultAnimationSpeed);
+		
+		File cacheFile = getCacheFile(cacheDirectory, file);
+		if (isUpToDate(cacheFile, file, stripLength))
+		{
+			try
+			{
+				return new Sprite(map(cacheFile, file), origin, size, defaultAnimationSpeed);
+			}
+			catch (IOException e)
+			{
+				// Unreadable cache files are simply replaced
+			}
+		}
+		
+		Sprite sprite = new Sprite(file, stripLength, origin, size, defaultAnimationSpeed);
+		cacheDirectory.mkdirs();
+		try
+		{
+			write(sprite, cacheFile);
+		}
+		catch (IOException e)
+		{
+			// The sprite is still usable, even when the cache can't be written, it is only 
+			// decoded again next time
+		}
+		
+		return sprite;
+	}
+	
+	/**
+	 * Reads a sprite from a cache file. The sprite will have the origin and the animation 
+	 * speed stored in the file and its original size.
+	 * @param cacheFile The cache file
+	 * @return The sprite stored in the file
+	 * @throws IOException If the file couldn't be read or isn't a valid cache file
+	 */
+	public static Sprite read(File cacheFile) throws IOException
+	{
+		Header header = readHeader(cacheFile);
+		return new Sprite(map(cacheFile, null), header.origin, null, header.animationSpeed);
+	}
+	
+	/**
+	 * Writes a sprite into a cache file. This can be used for creating the cache files 
+	 * beforehand, as part of a build, for example.
+	 * @param sprite The sprite that is written
+	 * @param cacheFile The file the sprite is written to
+	 * @throws IOException If the file couldn't be written
+	 */
+	public static void write(Sprite sprite, File cacheFile) throws IOException
+	{
+		BufferedImage first = sprite.getFrame(0);
+		int width = first.getWidth();
+		int height = first.getHeight();
+		File source = sprite.getSourceFile();
+		Vector3D origin = sprite.getOrigin().dividedBy(sprite.getScaling());
+		
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.put((byte) (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 0 : 1));
+		header.putLong(source == null ? 0 : source.lastModified());
+		header.putLong(source == null ? 0 : source.length());
+		header.putInt(sprite.getLength());
+		header.putInt(width);
+		header.putInt(height);
+		header.putDouble(origin.getX());
+		header.putDouble(origin.getY());
+		header.putDouble(sprite.getDefaultAnimationSpeed());
+		header.rewind();
+		
+		// The file is written next to the target first so that a partially written file is 
+		// never used. Each writer uses its own temporary file, since multiple threads may 
+		// write the same sprite at the same time.
+		File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", 
+				cacheFile.getAbsoluteFile().getParentFile());
+		try
+		{
+			writeFile(sprite, tempFile, header, width, height);
+			try
+			{
+				Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, 
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(tempFile.toPath(), cacheFile.toPath(), 
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+	
+	/**
+	 * Checks whether a cache file can be used in place of an image file
+	 * @param cacheFile The cache file
+	 * @param source The image file
+	 * @param stripLength How many frames the image file contains
+	 * @return Whether the cache file exists and was written from the current version of the 
+	 * image file
+	 */
+	public static boolean isUpToDate(File cacheFile, File source, int stripLength)
+	{
+		if (!cacheFile.isFile())
+			return false;
+		
+		try
+		{
+			Header header = readHeader(cacheFile);
+			return header.sourceModified == source.lastModified() && 
+					header.sourceLength == source.length() && 
+					header.length == Math.max(1, stripLength);
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+	
+	private static File getCacheFile(File cacheDirectory, File source)
+	{
+		// The path is included so that images with the same name don't collide
+		String path = source.getAbsolutePath();
+		return new File(cacheDirectory, source.getName() + "-" + 
+				Integer.toHexString(path.hashCode()) + FILE_EXTENSION);
+	}
+	
+	private static OffHeapFrameSource map(File cacheFile, File source) throws IOException
+	{
+		Header header = readHeader(cacheFile);
+		
+		// The mapping stays valid after the channel has been closed
+		try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ))
+		{
+			MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			data.position(HEADER_SIZE);
+			return new OffHeapFrameSource(data.slice(), header.length, header.width, 
+					header.height, true, source);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Cache file " + cacheFile + " is truncated", e);
+		}
+	}
+	
+	private static Header readHeader(File cacheFile) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+		try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ))
+		{
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer) < 0)
+					throw new IOException(cacheFile + " is not a sprite cache file");
+			}
+		}
+		buffer.flip();
+		
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException(cacheFile + " is not a supported sprite cache file");
+		// Files written on a platform with a different byte order can't be mapped as is
+		boolean bigEndian = buffer.get() == 0;
+		if (bigEndian != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN))
+			throw new IOException(cacheFile + " was written with a different byte order");
+		
+		Header header = new Header();
+		header.sourceModified = buffer.getLong();
+		header.sourceLength = buffer.getLong();
+		header.length = buffer.getInt();
+		header.width = buffer.getInt();
+		header.height = buffer.getInt();
+		header.origin = new Vector3D(buffer.getDouble(), buffer.getDouble());
+		header.animationSpeed = buffer.getDouble();
+		
+		return header;
+	}
+	
+	private static void writeFile(Sprite sprite, File file, ByteBuffer header, int width, 
+			int height) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, 
+				StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			writeFully(channel, header);
+			
+			// The pixels are stored in premultiplied format so that they can be drawn as is
+			BufferedImage premultiplied = new BufferedImage(width, height, 
+					BufferedImage.TYPE_INT_ARGB_PRE);
+			int[] pixels = ((DataBufferInt) premultiplied.getRaster().getDataBuffer()).getData();
+			ByteBuffer frameData = ByteBuffer.allocate(pixels.length * 4).order( 
+					ByteOrder.nativeOrder());
+			
+			for (int i = 0; i < sprite.getLength(); i++)
+			{
+				Graphics2D g2d = premultiplied.createGraphics();
+				g2d.setComposite(AlphaComposite.Src);
+				g2d.drawImage(sprite.getFrame(i), 0, 0, null);
+				g2d.dispose();
+				
+				frameData.clear();
+				frameData.asIntBuffer().put(pixels);
+				writeFully(channel, frameData);
+			}
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException
+	{
+		while (data.hasRemaining())
+		{
+			channel.write(data);
+		}
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	private static class Header
+	{
+		private long sourceModified, sourceLength;
+		private int length, width, height;
+		private Vector3D origin;
+		private double animationSpeed;
+	}
+}
@@ -2,18 +2,21 @@ package utopia.vision.resource;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 import utopia.genesis.util.Vector3D;
 import utopia.vision.event.AnimationEvent;
 import utopia.vision.event.AnimationEvent.EventType;
+import utopia.vision.filter.AnimatedFilter;
 import utopia.vision.filter.ImageFilter;
 import utopia.vision.event.AnimationListenerHandler;
 
 /**
- * Spritedrawer is able to draw and animate sprites.
+ * Spritedrawer is able to draw and animate sprites. A drawer may either animate by itself, 
+ * follow a shared {@link AnimationClock} or calculate its frame from the 
+ * {@link AnimationTime}. In the latter two cases animating the drawer costs next to nothing.
  * @author Mikko Hilpinen.
  * @since 2.7.2013.
  */
@@ -21,14 +24,31 @@ public class SpriteDrawer
 {
 	// ATTRIBUTES	-------------------------------------------------------
 	
+	private static final int EVENT_TYPE_AMOUNT = EventType.values().length;
+	
 	private boolean animationSpeedDefined = false;
 	private double animationSpeed = Sprite.DEFAULT_ANIMATION_SPEED_PER_SECOND, frameIndex = 0;
 	private Vector3D forcedOrigin = null;
 	
+	private AnimationClock clock = null;
+	private int clockPhase = 0, lastFrame = 0;
+	
+	private boolean timeBased = false;
+	private double timeBase = 0, timeBasePosition = 0;
+	private long completedCycles = 0, lastCycles = 0;
+	
 	private Sprite sprite;
 	private LinkedList<ImageFilter> filters = new LinkedList<>();
-	private BufferedImage[] filteredFrames = null;
+	private FilteredFrameCache.Frames filteredFrames = null;
+	private AnimatedFilter animatedFilter = null;
+	private double animatedFilterStart = 0;
+	// The last frame filtered with the animated filter, which is drawn until the frame or 
+	// the step changes
+	private BufferedImage animatedFrame = null;
+	private int animatedFrameIndex = 0, animatedFrameStep = 0;
 	private AnimationListenerHandler listenerHandler = null;
+	// The events are immutable, so each type is created only once for each sprite
+	private AnimationEvent[] events = null;
 		
 		
 	// CONSTRUCTOR	-------------------------------------------------------
@@ -78,6 +98,7 @@ public class SpriteDrawer
 	public void setSprite(Sprite sprite, boolean resetAnimation)
 	{
 		this.sprite = sprite;
+		this.events = null;
 		
 		if (!this.animationSpeedDefined && sprite != null)
 			this.animationSpeed = sprite.getDefaultAnimationSpeed();
@@ -92,19 +113,25 @@ public class SpriteDrawer
 	
 	/**
 	 * @return How fast the frames in the animation change (frames / second). The default value 
-	 * depends from the sprite that is being drawn.
+	 * depends from the sprite that is being drawn. If the drawer follows an animation clock, 
+	 * this is the speed of the clock.
 	 */
 	public double getAnimationSpeed()
 	{
+		if (this.clock != null)
+			return this.clock.getSpeed();
 		return this.animationSpeed;
 	}
 	
 	/**
-	 * Changes how fast the frames in the animation change
+	 * Changes how fast the frames in the animation change. If the drawer was following an 
+	 * animation clock, it starts animating by itself again.
 	 * @param framesPerSecond The new animation speed (frames / second)
 	 */
 	public void setAnimationSpeed(double framesPerSecond)
 	{
+		setAnimationClock(null, 0);
+		rebaseTime();
 		this.animationSpeedDefined = true;
 		
 		// Generates animation events if necessary
@@ -124,6 +151,7 @@ public class SpriteDrawer
 	 */
 	public void resetAnimationSpeed()
 	{
+		rebaseTime();
 		this.animationSpeedDefined = false;
 		if (this.sprite != null)
 			this.animationSpeed = this.sprite.getDefaultAnimationSpeed();
@@ -148,9 +176,32 @@ public class SpriteDrawer
 	 */
 	public int getFrameIndex()
 	{
+		if (this.clock != null && this.sprite != null)
+			return this.clock.getFrameIndex(this.clockPhase) % this.sprite.getLength();
+		if (this.timeBased && this.sprite != null)
+		{
+			int length = this.sprite.getLength();
+			double position = getTimePosition() % length;
+			if (position < 0)
+				position += length;
+			return Math.min(length - 1, (int) position);
+		}
 		return (int) this.frameIndex;
 	}
 	
+	/**
+	 * @return How many times the animation has completed. In time based mode, this is 
+	 * calculated from the current time when requested.
+	 * @see #setTimeBased(boolean)
+	 */
+	public long getCompletedCycles()
+	{
+		if (this.timeBased && this.sprite != null)
+			return this.completedCycles + 
+					(long) Math.abs(Math.floor(getTimePosition() / this.sprite.getLength()));
+		return this.completedCycles;
+	}
+	
 	/**
 	 * Changes which frame from the animation is currently drawn
 	 * @param index The index of the frame drawn [0, Sprite's length[
@@ -170,6 +221,88 @@ public class SpriteDrawer
 		generateAnimationEvent(EventType.ANIMATION_RESET);
 	}
 	
+	/**
+	 * @return The animation clock the drawer follows. Null if the drawer animates by itself.
+	 */
+	public AnimationClock getAnimationClock()
+	{
+		return this.clock;
+	}
+	
+	/**
+	 * Makes the drawer follow a shared animation clock. While the drawer follows a clock, 
+	 * the frame is read from the clock and animating the drawer doesn't advance the 
+	 * animation. The clock is advanced once for all of the drawers that use it. Animation 
+	 * events are still generated when the drawer is animated, but only the comparison of 
+	 * the frame indices is done for drawers without listeners. The clock should have the 
+	 * same length as the sprite.
+	 * @param clock The clock the drawer follows. Null if the drawer should animate by itself 
+	 * again, starting from the current frame.
+	 * @param phase How many frames ahead of the clock the drawer is
+	 * @see utopia.vision.util.AnimationClockRegistry
+	 */
+	public void setAnimationClock(AnimationClock clock, int phase)
+	{
+		if (clock != null)
+			setTimeBased(false);
+		
+		if (clock == null)
+		{
+			if (this.clock != null)
+			{
+				this.frameIndex = getFrameIndex();
+				this.clock = null;
+			}
+		}
+		else
+		{
+			this.clock = clock;
+			this.clockPhase = phase;
+			this.lastFrame = getFrameIndex();
+		}
+	}
+	
+	/**
+	 * @return Whether the drawer calculates its frame from the animation time
+	 * @see #setTimeBased(boolean)
+	 */
+	public boolean isTimeBased()
+	{
+		return this.timeBased;
+	}
+	
+	/**
+	 * Changes whether the drawer calculates its frame from the animation time. A time based 
+	 * drawer only stores the time its animation started and its speed. The frame is 
+	 * calculated when it is needed, so the drawer doesn't need to be animated at all and an 
+	 * object that isn't drawn costs nothing. Animating a time based drawer only generates 
+	 * the animation events, which are otherwise never generated. The animation continues 
+	 * from the current frame.
+	 * @param timeBased Should the frame be calculated from the animation time
+	 * @see AnimationTime
+	 */
+	public void setTimeBased(boolean timeBased)
+	{
+		if (timeBased == this.timeBased)
+			return;
+		
+		if (timeBased)
+		{
+			setAnimationClock(null, 0);
+			this.timeBase = AnimationTime.now();
+			this.timeBasePosition = this.frameIndex;
+			this.lastFrame = getFrameIndex();
+			this.lastCycles = this.completedCycles;
+			this.timeBased = true;
+		}
+		else
+		{
+			this.completedCycles = getCompletedCycles();
+			this.frameIndex = currentPosition();
+			this.timeBased = false;
+		}
+	}
+	
 	/**
 	 * @return The animation event listener handler used with this drawer
 	 */
@@ -180,6 +313,30 @@ public class SpriteDrawer
 		return this.listenerHandler;
 	}
 	
+	/**
+	 * @return The animated filter applied when the sprite is drawn. Null if there is none.
+	 */
+	public AnimatedFilter getAnimatedFilter()
+	{
+		return this.animatedFilter;
+	}
+	
+	/**
+	 * Changes the animated filter that is applied on top of the other filters. Unlike the 
+	 * other filters, an animated filter is applied only to the frame that is drawn, when 
+	 * it is drawn. The results are kept in the {@link FilteredFrameCache} for each frame and 
+	 * step of the filter, so while the budget allows, each frame is filtered only once per 
+	 * step. The filter's cycle starts from the current animation time.
+	 * @param filter The new animated filter. Null if no animated filter should be used.
+	 * @see AnimationTime
+	 */
+	public void setAnimatedFilter(AnimatedFilter filter)
+	{
+		this.animatedFilter = filter;
+		this.animatedFilterStart = AnimationTime.now();
+		this.animatedFrame = null;
+	}
+	
 	/**
 	 * @return The origin / offset used when drawing the sprite
 	 */
@@ -239,11 +396,11 @@ public class SpriteDrawer
 		if (getSprite() != null)
 		{
 			// May draw a filtered version of the sprite
-			if (this.filteredFrames == null)
+			BufferedImage filtered = getFilteredFrame(frameIndex);
+			if (filtered == null)
 				Sprite.drawSprite(getSprite(), frameIndex, origin, g2d);
 			else
-				Sprite.drawImage(this.filteredFrames[getFrameIndex() % getSprite().getLength()], 
-						origin, getSprite().getScaling(), g2d);
+				Sprite.drawImage(filtered, origin, getSprite().getScaling(), g2d);
 		}
 	}
 	
@@ -263,18 +420,29 @@ public class SpriteDrawer
 	 */
 	public void animate(double durationMillis, double framesPerSecond)
 	{
+		// When a clock is followed or the time is used, only the events need to be generated
+		if (this.clock != null)
+		{
+			followClock();
+			return;
+		}
+		if (this.timeBased)
+		{
+			followTime();
+			return;
+		}
+		
 		int previousIndex = getFrameIndex();
 		
 		// Checks whether the animation cycled
 		if (setFrameIndex(this.frameIndex +  durationMillis * framesPerSecond / 1000))
 		{
-			if (framesPerSecond > 0)
+			if (framesPerSecond > 0 ? getFrameIndex() < previousIndex : 
+					getFrameIndex() > previousIndex)
 			{
-				if (getFrameIndex() < previousIndex)
-					generateAnimationEvent(EventType.ANIMATION_COMPLETED);
-			}
-			else if (getFrameIndex() > previousIndex)
+				this.completedCycles++;
 				generateAnimationEvent(EventType.ANIMATION_COMPLETED);
+			}
 		}
 	}
 	
@@ -284,26 +452,19 @@ public class SpriteDrawer
 	 */
 	public void applyFilter(ImageFilter filter)
 	{
-		this.filters.add(filter);
-		
-		if (getSprite() != null)
-		{
-			// Creates the new image table if necessary
-			if (this.filteredFrames == null)
-			{
-				this.filteredFrames = new BufferedImage[getSprite().getLength()];
-				for (int i = 0; i < this.filteredFrames.length; i++)
-				{
-					this.filteredFrames[i] = getSprite().getFrame(i);
-				}
-			}
-			
-			// Applies the new filter
-			for (int i = 0; i < this.filteredFrames.length; i++)
-			{
-				this.filteredFrames[i] = filter.filter(this.filteredFrames[i]);
-			}
-		}
+		applyFilters(Arrays.asList(filter));
+	}
+	
+	/**
+	 * Applies multiple new filters to the drawer. The filtered frames are shared with the 
+	 * other drawers that apply equal filters to the same sprite. The new filters are 
+	 * applied in a single pass when possible.
+	 * @param filters The filters that are applied when drawing the sprite, in order
+	 */
+	public void applyFilters(List<? extends ImageFilter> filters)
+	{
+		this.filters.addAll(filters);
+		reapplyFilters();
 	}
 	
 	/**
@@ -312,7 +473,7 @@ public class SpriteDrawer
 	public void clearFilters()
 	{
 		this.filters.clear();
-		this.filteredFrames = null;
+		releaseFilteredFrames();
 	}
 	
 	/**
@@ -357,33 +518,179 @@ public class SpriteDrawer
 	
 	/**
 	 * Generates a new animation event and informs all of the animation listeners attached 
-	 * to this drawer
+	 * to this drawer. Nothing is done if none of the listeners are interested in the event 
+	 * type. The same event instance is reused until the sprite changes.
 	 * @param type The type of the generated event
 	 */
 	public void generateAnimationEvent(EventType type)
 	{
-		if (this.listenerHandler != null)
+		if (this.listenerHandler != null && this.listenerHandler.acceptsType(type))
 		{
-			this.listenerHandler.onAnimationEvent(new AnimationEvent(type, this, getSprite()));
+			if (this.events == null)
+				this.events = new AnimationEvent[EVENT_TYPE_AMOUNT];
+			
+			AnimationEvent event = this.events[type.ordinal()];
+			if (event == null)
+			{
+				event = new AnimationEvent(type, this, getSprite());
+				this.events[type.ordinal()] = event;
+			}
+			
+			this.listenerHandler.onAnimationEvent(event);
 		}
 	}
 	
+	// The filtered version of a frame. Null if the drawer doesn't use filters.
+	BufferedImage getFilteredFrame(int frameIndex)
+	{
+		if (getSprite() == null || (this.filteredFrames == null && this.animatedFilter == null))
+			return null;
+		
+		int index = Math.floorMod(frameIndex, getSprite().getLength());
+		BufferedImage frame = this.filteredFrames == null ? getSprite().getFrame(index) : 
+				this.filteredFrames.getFrames()[index];
+		if (this.animatedFilter == null)
+			return frame;
+		
+		// Only the drawn frame is filtered with the animated filter. The cache is only 
+		// checked when the frame or the step changes.
+		int step = this.animatedFilter.getStep(AnimationTime.now() - this.animatedFilterStart);
+		if (this.animatedFrame == null || index != this.animatedFrameIndex || 
+				step != this.animatedFrameStep)
+		{
+			this.animatedFrame = FilteredFrameCache.getAnimatedFrame(getSprite(), this.filters, 
+					frame, index, this.animatedFilter, step);
+			this.animatedFrameIndex = index;
+			this.animatedFrameStep = step;
+		}
+		return this.animatedFrame;
+	}
+	
 	private void reapplyFilters()
 	{
-		List<ImageFilter> filters = new ArrayList<>(this.filters);
-		clearFilters();
-		for (ImageFilter filter : filters)
+		// The frames are shared through the cache, which also finds the frames filtered 
+		// with the previous filters when new filters are added
+		FilteredFrameCache.Frames previousFrames = this.filteredFrames;
+		this.filteredFrames = null;
+		this.animatedFrame = null;
+		if (!this.filters.isEmpty() && getSprite() != null)
+			this.filteredFrames = FilteredFrameCache.acquire(this, getSprite(), this.filters);
+		
+		if (previousFrames != null && previousFrames != this.filteredFrames)
+			FilteredFrameCache.release(this, previousFrames);
+	}
+	
+	private void releaseFilteredFrames()
+	{
+		this.animatedFrame = null;
+		if (this.filteredFrames != null)
 		{
-			applyFilter(filter);
+			FilteredFrameCache.release(this, this.filteredFrames);
+			this.filteredFrames = null;
 		}
 	}
 	
+	private void followClock()
+	{
+		int previousIndex = this.lastFrame;
+		int index = getFrameIndex();
+		this.lastFrame = index;
+		
+		if (index != previousIndex)
+		{
+			generateAnimationEvent(EventType.FRAME_CHANGED);
+			if (this.clock.getSpeed() > 0 ? index < previousIndex : index > previousIndex)
+			{
+				this.completedCycles++;
+				generateAnimationEvent(EventType.ANIMATION_COMPLETED);
+			}
+		}
+	}
+	
+	private void followTime()
+	{
+		// The events are only generated if someone listens to them
+		if (this.listenerHandler == null)
+			return;
+		
+		int index = getFrameIndex();
+		long cycles = getCompletedCycles();
+		
+		if (index != this.lastFrame)
+			generateAnimationEvent(EventType.FRAME_CHANGED);
+		if (cycles != this.lastCycles)
+			generateAnimationEvent(EventType.ANIMATION_COMPLETED);
+		
+		this.lastFrame = index;
+		this.lastCycles = cycles;
+	}
+	
+	// The unwrapped animation position since the time base
+	private double getTimePosition()
+	{
+		return this.timeBasePosition + 
+				(AnimationTime.now() - this.timeBase) * this.animationSpeed / 1000;
+	}
+	
+	// The current position within the animation [0, length[
+	private double currentPosition()
+	{
+		if (!this.timeBased || this.sprite == null)
+			return getFrameIndex();
+		
+		int length = this.sprite.getLength();
+		double position = getTimePosition() % length;
+		if (position < 0)
+			position += length;
+		return position >= length ? 0 : position;
+	}
+	
+	// Moves the time base to the current moment, so that the speed or the position may change
+	private void rebaseTime()
+	{
+		if (!this.timeBased)
+			return;
+		
+		this.completedCycles = getCompletedCycles();
+		this.lastCycles = this.completedCycles;
+		this.timeBasePosition = currentPosition();
+		this.timeBase = AnimationTime.now();
+	}
+	
 	// Returns the imageindex to a valid value
 	private boolean setFrameIndex(double index)
 	{
 		if (getSprite() == null)
 			return false;
 		
+		// A drawer that follows a clock is offset from the clock instead
+		if (this.clock != null)
+		{
+			int previousIndex = getFrameIndex();
+			this.clockPhase = (int) Math.floor(index) - this.clock.getFrameIndex();
+			this.lastFrame = getFrameIndex();
+			
+			boolean frameChanged = this.lastFrame != previousIndex;
+			if (frameChanged)
+				generateAnimationEvent(EventType.FRAME_CHANGED);
+			return frameChanged;
+		}
+		
+		// A time based drawer starts again from the new frame
+		if (this.timeBased)
+		{
+			int previousIndex = getFrameIndex();
+			rebaseTime();
+			this.timeBasePosition = Math.floorMod((int) Math.floor(index), 
+					getSprite().getLength());
+			this.lastFrame = getFrameIndex();
+			
+			boolean frameChanged = this.lastFrame != previousIndex;
+			if (frameChanged)
+				generateAnimationEvent(EventType.FRAME_CHANGED);
+			return frameChanged;
+		}
+		
 		double newIndex;
 		if (index < 0)
 		{
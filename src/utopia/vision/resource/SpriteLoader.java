@@ -0,0 +1,263 @@
+package utopia.vision.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utopia.genesis.util.Vector3D;
+
+/**
+ * A sprite loader decodes sprites in the background so that the calling thread may keep
+ * working (rendering a loading screen, for example) while the sprites are being loaded. The
+ * loader keeps track of the overall progress of all the sprites it has been asked to load.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class SpriteLoader
+{
+	// ATTRIBUTES	-----------------
+	
+	private ExecutorService executor;
+	private boolean ownsExecutor;
+	
+	private AtomicInteger requestedAmount = new AtomicInteger(0);
+	private AtomicInteger completedAmount = new AtomicInteger(0);
+	private List<CompletableFuture<Sprite>> pending = new ArrayList<>();
+	private List<ProgressListener> listeners = new CopyOnWriteArrayList<>();
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new loader that decodes sprites on as many threads as there are processors
+	 */
+	public SpriteLoader()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Creates a new loader that uses its own threads
+	 * @param threadAmount The maximum number of sprites decoded simultaneously
+	 */
+	public SpriteLoader(int threadAmount)
+	{
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threadAmount),
+				new LoaderThreadFactory());
+		this.ownsExecutor = true;
+	}
+	
+	/**
+	 * Creates a new loader that uses an existing executor. The executor won't be shut down by
+	 * the loader.
+	 * @param executor The executor that performs the decoding
+	 */
+	public SpriteLoader(ExecutorService executor)
+	{
+		this.executor = executor;
+		this.ownsExecutor = false;
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return How many sprites this loader has been asked to load
+	 */
+	public int getRequestedAmount()
+	{
+		return this.requestedAmount.get();
+	}
+	
+	/**
+	 * @return How many of the requested sprites have been loaded (or have failed to load)
+	 */
+	public int getCompletedAmount()
+	{
+		return this.completedAmount.get();
+	}
+	
+	/**
+	 * @return The overall loading progress [0, 1]. 1 when there are no sprites to load.
+	 */
+	public double getProgress()
+	{
+		int requested = getRequestedAmount();
+		if (requested == 0)
+			return 1;
+		else
+			return getCompletedAmount() / (double) requested;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Starts loading a sprite in the background
+	 * @param file The image file for the strip
+	 * @param stripLength How many separate images does the strip contain?
+	 * @param origin The sprite's origin's coordinates (relative). Use null for centered origin.
+	 * @return A future that will contain the loaded sprite. The future completes exceptionally
+	 * if the image couldn't be read or if the executor didn't accept the task (after 
+	 * {@link #shutdown()}, for example).
+	 */
+	public CompletableFuture<Sprite> load(File file, int stripLength, Vector3D origin)
+	{
+		return load(file, stripLength, origin, null, Sprite.DEFAULT_ANIMATION_SPEED_PER_SECOND);
+	}
+	
+	/**
+	 * Starts loading a sprite in the background
+	 * @param file The image file for the strip
+	 * @param stripLength How many separate images does the strip contain?
+	 * @param origin The sprite's origin's coordinates (relative). Use null for centered origin.
+	 * @param size The sprite's in-game size. Null for original image size.
+	 * @param defaultAnimationSpeed The default animation speed used with the sprite (frames per
+	 * second)
+	 * @return A future that will contain the loaded sprite. The future completes exceptionally
+	 * if the image couldn't be read or if the executor didn't accept the task (after 
+	 * {@link #shutdown()}, for example).
+	 */
+	public CompletableFuture<Sprite> load(File file, int stripLength, Vector3D origin,
+			Vector3D size, double defaultAnimationSpeed)
+	{
+		this.requestedAmount.incrementAndGet();
+		
+		// A rejected sprite is completed right away so that the progress still reaches 1
+		CompletableFuture<Sprite> future;
+		try
+		{
+			future = CompletableFuture.supplyAsync(() ->
+			{
+				try
+				{
+					// The pre-decoded sprite cache is used when one is available
+					return SpriteCache.load(file, stripLength, origin, size, 
+							defaultAnimationSpeed);
+				}
+				catch (IOException e)
+				{
+					throw new CompletionException(e);
+				}
+			}, this.executor);
+		}
+		catch (RejectedExecutionException e)
+		{
+			future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+		}
+		
+		synchronized (this.pending)
+		{
+			this.pending.add(future);
+		}
+		CompletableFuture<Sprite> loadFuture = future;
+		future.whenComplete((sprite, error) -> onLoadCompleted(loadFuture));
+		
+		return future;
+	}
+	
+	/**
+	 * @return A future that completes once all of the sprites requested so far have been
+	 * loaded. The future completes normally even if some of the sprites failed to load.
+	 */
+	public CompletableFuture<Void> whenAllLoaded()
+	{
+		CompletableFuture<?>[] futures;
+		synchronized (this.pending)
+		{
+			futures = this.pending.toArray(new CompletableFuture<?>[this.pending.size()]);
+		}
+		
+		// Failures are handled through the individual futures
+		return CompletableFuture.allOf(futures).handle((result, error) -> null);
+	}
+	
+	/**
+	 * Adds a new listener that will be informed whenever a sprite has been loaded
+	 * @param listener The listener that is added
+	 */
+	public void addProgressListener(ProgressListener listener)
+	{
+		this.listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener from this loader
+	 * @param listener The listener that is removed
+	 */
+	public void removeProgressListener(ProgressListener listener)
+	{
+		this.listeners.remove(listener);
+	}
+	
+	/**
+	 * Stops the loader's threads once the currently requested sprites have been loaded. If
+	 * the loader was created with an existing executor, the executor is left running.
+	 */
+	public void shutdown()
+	{
+		if (this.ownsExecutor)
+			this.executor.shutdown();
+	}
+	
+	private void onLoadCompleted(CompletableFuture<Sprite> future)
+	{
+		synchronized (this.pending)
+		{
+			this.pending.remove(future);
+		}
+		
+		int completed = this.completedAmount.incrementAndGet();
+		int requested = getRequestedAmount();
+		for (ProgressListener listener : this.listeners)
+		{
+			listener.onProgress(completed, requested);
+		}
+	}
+	
+	
+	// INTERFACES	-----------------
+	
+	/**
+	 * Progress listeners are informed about the overall progress of a sprite loader. Notice
+	 * that the listeners are called from the loading threads.
+	 * @author Mikko Hilpinen
+	 * @since 16.10.2026
+	 */
+	public static interface ProgressListener
+	{
+		/**
+		 * This method is called each time a sprite has been loaded or has failed to load
+		 * @param completedAmount How many sprites have been loaded so far
+		 * @param requestedAmount How many sprites have been requested so far
+		 */
+		public void onProgress(int completedAmount, int requestedAmount);
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	// The loader threads don't prevent the program from closing
+	private static class LoaderThreadFactory implements ThreadFactory
+	{
+		private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+		
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "Sprite loader " + THREAD_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
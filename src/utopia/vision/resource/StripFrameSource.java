@@ -0,0 +1,164 @@
+package utopia.vision.resource;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import utopia.vision.util.CompatibleImages;
+
+/**
+ * A strip frame source reads the frames from an image file where the frames are placed 
+ * side by side
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class StripFrameSource implements FrameSource
+{
+	// ATTRIBUTES	-----------------
+	
+	private File file;
+	private int length;
+	private int frameWidth = -1, frameHeight = -1;
+	private boolean compatibleFrames;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new frame source. The file isn't read at this point. Whether the frames are 
+	 * copied to compatible images is decided by the global setting at this point.
+	 * @param file The image file for the strip
+	 * @param stripLength How many separate images does the strip contain?
+	 * @throws FileNotFoundException If the file doesn't exist
+	 * @see Sprite#setCompatibleFramesUsed(boolean)
+	 */
+	public StripFrameSource(File file, int stripLength) throws FileNotFoundException
+	{
+		this(file, stripLength, Sprite.compatibleFramesAreUsed());
+	}
+	
+	/**
+	 * Creates a new frame source. The file isn't read at this point.
+	 * @param file The image file for the strip
+	 * @param stripLength How many separate images does the strip contain?
+	 * @param compatibleFrames Should the frames be copied to separate compatible images
+	 * @throws FileNotFoundException If the file doesn't exist
+	 */
+	public StripFrameSource(File file, int stripLength, boolean compatibleFrames) 
+			throws FileNotFoundException
+	{
+		if (file == null || !file.exists())
+			throw new FileNotFoundException("Image file " + file + " doesn't exist");
+		
+		this.file = file;
+		this.length = Math.max(1, stripLength);
+		this.compatibleFrames = compatibleFrames;
+	}
+	
+	
+	// IMPLEMENTED METHODS	---------
+	
+	@Override
+	public int getLength()
+	{
+		return this.length;
+	}
+	
+	@Override
+	public int getFrameWidth() throws IOException
+	{
+		readSize();
+		return this.frameWidth;
+	}
+	
+	@Override
+	public int getFrameHeight() throws IOException
+	{
+		readSize();
+		return this.frameHeight;
+	}
+	
+	@Override
+	public BufferedImage[] readFrames() throws IOException
+	{
+		BufferedImage strip = ImageIO.read(this.file);
+		if (strip == null)
+			throw new IOException("Can't read image file " + this.file);
+		
+		this.frameWidth = strip.getWidth() / this.length;
+		this.frameHeight = strip.getHeight();
+		
+		return split(strip, this.length, this.compatibleFrames);
+	}
+	
+	@Override
+	public File getSourceFile()
+	{
+		return this.file;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Splits a strip image into frames
+	 * @param strip The image containing the frames side by side
+	 * @param stripLength How many frames the strip contains
+	 * @param copy Should the frames be copied to separate compatible images (true) or should 
+	 * they share the strip's data (false)
+	 * @return The frames of the strip
+	 * @see Sprite#setCompatibleFramesUsed(boolean)
+	 */
+	public static BufferedImage[] split(BufferedImage strip, int stripLength, boolean copy)
+	{
+		int width = strip.getWidth() / stripLength;
+		int height = strip.getHeight();
+		
+		BufferedImage[] frames = new BufferedImage[stripLength];
+		for (int i = 0; i < stripLength; i++)
+		{
+			// Compatible frames are copied while other frames share the strip's data
+			if (copy)
+				frames[i] = CompatibleImages.copy(strip, i * width, 0, width, height);
+			else
+				frames[i] = strip.getSubimage(i * width, 0, width, height);
+		}
+		
+		return frames;
+	}
+	
+	private void readSize() throws IOException
+	{
+		if (this.frameWidth >= 0)
+			return;
+		
+		// Reads only the image header, if possible
+		try (ImageInputStream input = ImageIO.createImageInputStream(this.file))
+		{
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if (readers.hasNext())
+			{
+				ImageReader reader = readers.next();
+				try
+				{
+					reader.setInput(input);
+					this.frameHeight = reader.getHeight(0);
+					this.frameWidth = reader.getWidth(0) / this.length;
+				}
+				finally
+				{
+					reader.dispose();
+				}
+				return;
+			}
+		}
+		
+		readFrames();
+	}
+}
@@ -1,5 +1,7 @@
 package utopia.vision.resource;
 
+import java.util.Objects;
+
 import utopia.genesis.util.Vector3D;
 
 /**
@@ -24,12 +26,14 @@ public class Tile
 	 * @param spriteBankName The name of the bank that contains the sprite used in this tile
 	 * @param spriteName The name of the sprite used in this tile
 	 * @param size The size of the tile
+	 * @throws IllegalArgumentException If the size is null
 	 */
-	public Tile(String spriteBankName, String spriteName, Vector3D size)
+	public Tile(String spriteBankName, String spriteName, Vector3D size) throws 
+			IllegalArgumentException
 	{
 		this.bankName = spriteBankName;
 		this.spriteName = spriteName;
-		this.size = size;
+		this.size = requireSize(size);
 	}
 
 	/**
@@ -39,13 +43,14 @@ public class Tile
 	 * @param size The size of the tile
 	 * @param startFrameIndex The frame that is first displayed (default 0)
 	 * @param animated Should this tile be animated when drawn
+	 * @throws IllegalArgumentException If the size is null
 	 */
 	public Tile(String spriteBankName, String spriteName, Vector3D size, int startFrameIndex, 
-			boolean animated)
+			boolean animated) throws IllegalArgumentException
 	{
 		this.bankName = spriteBankName;
 		this.spriteName = spriteName;
-		this.size = size;
+		this.size = requireSize(size);
 		this.startFrameIndex = startFrameIndex;
 		this.animated = animated;
 	}
@@ -54,17 +59,47 @@ public class Tile
 	 * Copies and rescales a tile
 	 * @param other another tile
 	 * @param size The size of this new tile
+	 * @throws IllegalArgumentException If the size is null
 	 */
-	public Tile(Tile other, Vector3D size)
+	public Tile(Tile other, Vector3D size) throws IllegalArgumentException
 	{
 		this.bankName = other.bankName;
 		this.spriteName = other.spriteName;
-		this.size = size;
+		this.size = requireSize(size);
 		this.startFrameIndex = other.startFrameIndex;
 		this.animated = other.animated;
 	}
 	
 	
+	// IMPLEMENTED METHODS	-----
+	
+	@Override
+	public int hashCode()
+	{
+		int result = 31 + (this.bankName == null ? 0 : this.bankName.hashCode());
+		result = 31 * result + (this.spriteName == null ? 0 : this.spriteName.hashCode());
+		result = 31 * result + Double.hashCode(this.size.getX());
+		result = 31 * result + Double.hashCode(this.size.getY());
+		result = 31 * result + this.startFrameIndex;
+		return 31 * result + (this.animated ? 1 : 0);
+	}
+	
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Tile))
+			return false;
+		
+		Tile other = (Tile) obj;
+		return Objects.equals(this.bankName, other.bankName) && 
+				Objects.equals(this.spriteName, other.spriteName) && 
+				this.size.getX() == other.size.getX() && this.size.getY() == other.size.getY() && 
+				this.startFrameIndex == other.startFrameIndex && this.animated == other.animated;
+	}
+	
+	
 	// ACCESSORS	-------------
 	
 	/**
@@ -106,4 +141,15 @@ public class Tile
 	{
 		return this.size;
 	}
+	
+	
+	// OTHER METHODS	---------
+	
+	// The size is used for placing the tile, so every tile must have one
+	private static Vector3D requireSize(Vector3D size) throws IllegalArgumentException
+	{
+		if (size == null)
+			throw new IllegalArgumentException("A tile must have a size");
+		return size;
+	}
 }
@@ -1,22 +1,31 @@
 package utopia.vision.resource;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import utopia.flow.structure.Pair;
 import utopia.genesis.util.HelpMath;
 import utopia.genesis.util.Vector3D;
 
 /**
- * A tile map contains multiple tiles positioned in a way they form a map / surface
+ * A tile map contains multiple tiles positioned in a way they form a map / surface. The map 
+ * stores the tile positions in primitive arrays. Each distinct tile definition is stored 
+ * only once, in the map's palette, and the placed tiles refer to the palette by index. 
+ * The tiles can be placed and removed after the map has been created, in which case the 
+ * map's listeners are informed about the changed tiles. The map should only be modified 
+ * from the thread that draws it.
  * @author Mikko Hilpinen
  * @since 28.5.2016
  */
 public class TileMap
 {
-	// TODO: Make mutable?
 	// TODO: Add origin either here or at the drawer
 	// TODO: Make tileMapDrawer create a sprite drawer based on each tile in a map
 	// Set origin to tileMap.origin - tile.position. Each drawer handles animation separately.
@@ -24,8 +33,22 @@ public class TileMap
 	
 	// ATTRIBUTES	---------------
 	
-	private List<Pair<Vector3D, Tile>> tiles = new ArrayList<>();
+	/**
+	 * The largest amount of distinct tiles a single map may contain
+	 */
+	public static final int MAX_PALETTE_SIZE = 65536;
+	
+	private int tileAmount;
+	private double[] tileX, tileY;
+	// The kinds are unsigned indices to the palette
+	private short[] kinds;
+	private Tile[] palette;
+	private double[] kindWidths, kindHeights;
 	private Vector3D origin;
+	private TileGrid grid;
+	
+	private Map<Tile, Integer> kindIndices = null;
+	private List<TileMapListener> listeners = new ArrayList<>();
 	
 	
 	// CONSTRUCTOR	---------------
@@ -38,10 +61,113 @@ public class TileMap
 	public TileMap(Collection<? extends Pair<Vector3D, Tile>> tiles, Vector3D origin)
 	{
 		this.origin = origin;
-		this.tiles.addAll(tiles);
 		
-		// Sorts the tiles as well
-		this.tiles.sort(new PositionComparator());
+		// Sorts the tiles first
+		List<Pair<Vector3D, Tile>> sorted = new ArrayList<>(tiles);
+		sorted.sort(new PositionComparator());
+		
+		this.tileAmount = sorted.size();
+		this.tileX = new double[this.tileAmount];
+		this.tileY = new double[this.tileAmount];
+		this.kinds = new short[this.tileAmount];
+		
+		// Equal tiles share the same palette index
+		List<Tile> palette = new ArrayList<>();
+		Map<Tile, Integer> kindIndices = new HashMap<>();
+		for (int i = 0; i < this.tileAmount; i++)
+		{
+			Pair<Vector3D, Tile> tile = sorted.get(i);
+			this.tileX[i] = tile.getFirst().getX();
+			this.tileY[i] = tile.getFirst().getY();
+			
+			Integer kind = kindIndices.get(tile.getSecond());
+			if (kind == null)
+			{
+				kind = palette.size();
+				if (kind >= MAX_PALETTE_SIZE)
+					throw new IllegalArgumentException("A tile map may contain at most " + 
+							MAX_PALETTE_SIZE + " distinct tiles");
+				palette.add(tile.getSecond());
+				kindIndices.put(tile.getSecond(), kind);
+			}
+			this.kinds[i] = (short) kind.intValue();
+		}
+		
+		setPalette(palette.toArray(new Tile[palette.size()]));
+		this.kindIndices = kindIndices;
+		this.grid = new TileGrid(this);
+	}
+	
+	// Uses existing arrays, which are already sorted
+	private TileMap(double[] tileX, double[] tileY, short[] kinds, Tile[] palette, 
+			Vector3D origin)
+	{
+		this.origin = origin;
+		this.tileAmount = kinds.length;
+		this.tileX = tileX;
+		this.tileY = tileY;
+		this.kinds = kinds;
+		
+		setPalette(palette);
+		this.grid = new TileGrid(this);
+	}
+	
+	/**
+	 * Creates a new tile map where the tiles are placed in a regular grid. No tile objects 
+	 * are created for the individual grid cells.
+	 * @param columns The number of columns in the grid
+	 * @param rows The number of rows in the grid
+	 * @param cellSize The size of a single grid cell
+	 * @param kinds The palette index of the tile in each cell, row by row. Negative for empty 
+	 * cells.
+	 * @param palette The distinct tiles used in the map (at most {@link #MAX_PALETTE_SIZE})
+	 * @param origin The origin used for this map by default
+	 * @return A tile map containing the tiles
+	 * @throws IllegalArgumentException If the amount of kinds doesn't match the grid size or 
+	 * if a kind isn't in the palette
+	 */
+	public static TileMap fromGrid(int columns, int rows, Vector3D cellSize, int[] kinds, 
+			Tile[] palette, Vector3D origin) throws IllegalArgumentException
+	{
+		if (palette.length > MAX_PALETTE_SIZE)
+			throw new IllegalArgumentException("A tile map may contain at most " + 
+					MAX_PALETTE_SIZE + " distinct tiles");
+		if (columns < 0 || rows < 0 || (long) columns * rows != kinds.length)
+			throw new IllegalArgumentException("A grid of " + columns + "x" + rows + 
+					" cells can't have " + kinds.length + " kinds");
+		
+		int amount = 0;
+		for (int i = 0; i < kinds.length; i++)
+		{
+			if (kinds[i] >= palette.length)
+				throw new IllegalArgumentException("Kind " + kinds[i] + " at index " + i + 
+						" is not in the palette of " + palette.length + " tiles");
+			if (kinds[i] >= 0)
+				amount++;
+		}
+		
+		double[] tileX = new double[amount];
+		double[] tileY = new double[amount];
+		short[] tileKinds = new short[amount];
+		
+		// The tiles are stored from bottom right to top left
+		int index = 0;
+		for (int row = rows - 1; row >= 0; row--)
+		{
+			for (int column = columns - 1; column >= 0; column--)
+			{
+				int kind = kinds[row * columns + column];
+				if (kind >= 0)
+				{
+					tileX[index] = column * cellSize.getX();
+					tileY[index] = row * cellSize.getY();
+					tileKinds[index] = (short) kind;
+					index++;
+				}
+			}
+		}
+		
+		return new TileMap(tileX, tileY, tileKinds, palette.clone(), origin);
 	}
 	
 	
@@ -50,10 +176,85 @@ public class TileMap
 	/**
 	 * @return The tiles in this map. The returned list is a copy and changes made to it won't 
 	 * affect the map
+	 * @see #getTileView()
 	 */
 	public List<Pair<Vector3D, Tile>> getTiles()
 	{
-		return new ArrayList<>(this.tiles);
+		return new ArrayList<>(getTileView());
+	}
+	
+	/**
+	 * @return A read-only view to the tiles in this map. The tiles are not copied, but the 
+	 * returned pairs are created as they are requested. The view reflects the later changes 
+	 * made to the map.
+	 */
+	public List<Pair<Vector3D, Tile>> getTileView()
+	{
+		return new TileView();
+	}
+	
+	/**
+	 * @return How many tiles there are in this map
+	 */
+	public int getTileAmount()
+	{
+		return this.tileAmount;
+	}
+	
+	/**
+	 * @param index The index of a tile [0, tile amount[
+	 * @return The x-coordinate of the tile's top left corner
+	 */
+	public double getTileX(int index)
+	{
+		return this.tileX[index];
+	}
+	
+	/**
+	 * @param index The index of a tile [0, tile amount[
+	 * @return The y-coordinate of the tile's top left corner
+	 */
+	public double getTileY(int index)
+	{
+		return this.tileY[index];
+	}
+	
+	/**
+	 * @param index The index of a tile [0, tile amount[
+	 * @return The index of the tile in the palette
+	 * @see #getPaletteTile(int)
+	 */
+	public int getTileKind(int index)
+	{
+		return this.kinds[index] & 0xffff;
+	}
+	
+	/**
+	 * @param index The index of a tile [0, tile amount[
+	 * @return The tile at the index
+	 */
+	public Tile getTile(int index)
+	{
+		return this.palette[getTileKind(index)];
+	}
+	
+	/**
+	 * @return How many distinct tiles there are in this map. The tiles placed on the map 
+	 * later are added to the end of the palette and they're not removed from it, even when 
+	 * the tiles are removed from the map.
+	 */
+	public int getPaletteSize()
+	{
+		return this.palette.length;
+	}
+	
+	/**
+	 * @param kind An index in the palette [0, palette size[
+	 * @return The tile at that index of the palette
+	 */
+	public Tile getPaletteTile(int kind)
+	{
+		return this.palette[kind];
 	}
 	
 	/**
@@ -67,6 +268,63 @@ public class TileMap
 	
 	// OTHER METHODS	-----------
 	
+	/**
+	 * Adds a new listener that is informed whenever the tiles of this map change
+	 * @param listener The listener that is added
+	 */
+	public void addListener(TileMapListener listener)
+	{
+		if (!this.listeners.contains(listener))
+			this.listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener from this map
+	 * @param listener The listener that will no longer be informed about the changes
+	 */
+	public void removeListener(TileMapListener listener)
+	{
+		this.listeners.remove(listener);
+	}
+	
+	/**
+	 * Places a tile on the map. If there is already a tile at the exact same position, it is 
+	 * replaced. Only the changed tile is processed, the other tiles stay as they are.
+	 * @param position The position of the tile's top left corner
+	 * @param tile The tile that is placed. Null if the tile at the position should be removed.
+	 * @return The tile that was previously at the position. Null if there wasn't one.
+	 * @see #edit()
+	 */
+	public Tile setTile(Vector3D position, Tile tile)
+	{
+		int index = indexOf(position.getX(), position.getY());
+		Tile previous = index < 0 ? null : getTile(index);
+		
+		edit().setTile(position, tile).apply();
+		return previous;
+	}
+	
+	/**
+	 * Removes a tile from the map
+	 * @param position The position of the tile's top left corner
+	 * @return The tile that was removed. Null if there was no tile at the position.
+	 */
+	public Tile removeTile(Vector3D position)
+	{
+		return setTile(position, null);
+	}
+	
+	/**
+	 * Starts a new batch of changes. The changes are made once the edit is applied, after 
+	 * which the listeners are informed about all of the changes at once. This is more 
+	 * efficient than making a number of separate changes.
+	 * @return An edit for this map
+	 */
+	public Edit edit()
+	{
+		return new Edit();
+	}
+	
 	/**
 	 * Finds the tile that contains the provided point
 	 * @param position a position in the map
@@ -75,36 +333,755 @@ public class TileMap
 	 */
 	public Pair<Vector3D, Tile> getTileAt(Vector3D position)
 	{
-		// Goes through the list (from bottom right to top left) and checks possible 
-		// containments
-		for (Pair<Vector3D, Tile> tile : this.tiles)
+		// Only the tiles in the same grid cell need to be checked. They're in the same order 
+		// as in the list (from bottom right to top left).
+		for (int index : this.grid.getCell(position.getX(), position.getY()))
 		{
-			if (tile.getFirst().getY() > position.getY() && 
-					tile.getFirst().getX() < position.getX() && 
-					HelpMath.pointIsInRange(position, tile.getFirst(), 
-					tile.getFirst().plus(tile.getSecond().getSize())))
-				return tile;
+			int kind = getTileKind(index);
+			Vector3D tilePosition = new Vector3D(this.tileX[index], this.tileY[index]);
+			if (HelpMath.pointIsInRange(position, tilePosition, tilePosition.plus( 
+					new Vector3D(this.kindWidths[kind], this.kindHeights[kind]))))
+				return new Pair<>(tilePosition, this.palette[kind]);
 		}
 		
 		return null;
 	}
 	
+	/**
+	 * Finds the tiles that overlap the provided area
+	 * @param position The top left corner of the area
+	 * @param size The size of the area
+	 * @return The tiles that overlap the area, along with their positions. The tiles are in 
+	 * the same order as in {@link #getTiles()}.
+	 */
+	public List<Pair<Vector3D, Tile>> getTilesIn(Vector3D position, Vector3D size)
+	{
+		int[] indices = getTileIndicesIn(position.getX(), position.getY(), size.getX(), 
+				size.getY());
+		
+		List<Pair<Vector3D, Tile>> tiles = new ArrayList<>(indices.length);
+		for (int index : indices)
+		{
+			tiles.add(getTilePair(index));
+		}
+		return tiles;
+	}
+	
+	/**
+	 * Finds the indices of the tiles that overlap the provided area
+	 * @param x The x-coordinate of the area's top left corner
+	 * @param y The y-coordinate of the area's top left corner
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 * @return The indices of the overlapping tiles in {@link #getTiles()}, in ascending order
+	 */
+	int[] getTileIndicesIn(double x, double y, double width, double height)
+	{
+		int[] candidates = this.grid.getCellsIn(x, y, width, height);
+		
+		// Only keeps the tiles that actually overlap the area
+		int amount = 0;
+		for (int index : candidates)
+		{
+			int kind = getTileKind(index);
+			double tileX = this.tileX[index];
+			double tileY = this.tileY[index];
+			
+			if (tileX < x + width && tileX + this.kindWidths[kind] > x && 
+					tileY < y + height && tileY + this.kindHeights[kind] > y)
+				candidates[amount++] = index;
+		}
+		
+		return Arrays.copyOf(candidates, amount);
+	}
+	
+	// Finds the index of the first tile at the exact position. -1 if there is no such tile.
+	private int indexOf(double x, double y)
+	{
+		int low = 0, high = this.tileAmount;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (compare(this.tileX[middle], this.tileY[middle], x, y) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		
+		if (low < this.tileAmount && compare(this.tileX[low], this.tileY[low], x, y) == 0)
+			return low;
+		else
+			return -1;
+	}
+	
+	private int kindOf(Tile tile)
+	{
+		if (this.kindIndices == null)
+		{
+			this.kindIndices = new HashMap<>();
+			for (int i = 0; i < this.palette.length; i++)
+			{
+				this.kindIndices.putIfAbsent(this.palette[i], i);
+			}
+		}
+		
+		// New tiles are added to the end of the palette
+		Integer kind = this.kindIndices.get(tile);
+		if (kind == null)
+		{
+			kind = this.palette.length;
+			if (kind >= MAX_PALETTE_SIZE)
+				throw new IllegalArgumentException("A tile map may contain at most " + 
+						MAX_PALETTE_SIZE + " distinct tiles");
+			
+			Tile[] palette = Arrays.copyOf(this.palette, kind + 1);
+			palette[kind] = tile;
+			setPalette(palette);
+			this.kindIndices.put(tile, kind);
+		}
+		
+		return kind;
+	}
+	
+	private void apply(Map<Location, Tile> edits)
+	{
+		// Finds out which tiles are removed and which are inserted. Replacing a tile means 
+		// removing the old one and inserting the new one.
+		int[] removed = new int[edits.size()];
+		int removedAmount = 0;
+		List<Location> inserted = new ArrayList<>(edits.size());
+		List<Integer> insertedKinds = new ArrayList<>(edits.size());
+		
+		for (Map.Entry<Location, Tile> edit : edits.entrySet())
+		{
+			Location location = edit.getKey();
+			int index = indexOf(location.x, location.y);
+			int kind = edit.getValue() == null ? -1 : kindOf(edit.getValue());
+			
+			if (index >= 0 && kind == getTileKind(index))
+				continue;
+			if (index >= 0)
+				removed[removedAmount++] = index;
+			if (kind >= 0)
+			{
+				inserted.add(location);
+				insertedKinds.add(kind);
+			}
+		}
+		
+		if (removedAmount == 0 && inserted.isEmpty())
+			return;
+		
+		// The same tile may have been matched by multiple edits
+		Arrays.sort(removed, 0, removedAmount);
+		int uniqueAmount = 0;
+		for (int i = 0; i < removedAmount; i++)
+		{
+			if (uniqueAmount == 0 || removed[uniqueAmount - 1] != removed[i])
+				removed[uniqueAmount++] = removed[i];
+		}
+		
+		Change change = new Change(Arrays.copyOf(removed, uniqueAmount), inserted.size());
+		removeTiles(change);
+		insertTiles(inserted, insertedKinds, change);
+		
+		this.grid = this.grid.update(this, change);
+		for (TileMapListener listener : new ArrayList<>(this.listeners))
+		{
+			listener.onTilesChanged(this, change);
+		}
+	}
+	
+	private void removeTiles(Change change)
+	{
+		int[] removed = change.removedIndices;
+		for (int i = 0; i < removed.length; i++)
+		{
+			change.removedX[i] = this.tileX[removed[i]];
+			change.removedY[i] = this.tileY[removed[i]];
+			change.removedKinds[i] = getTileKind(removed[i]);
+		}
+		
+		// The remaining tiles are moved over the removed ones
+		int next = 0, amount = 0;
+		for (int i = 0; i < this.tileAmount; i++)
+		{
+			if (next < removed.length && removed[next] == i)
+				next++;
+			else
+			{
+				this.tileX[amount] = this.tileX[i];
+				this.tileY[amount] = this.tileY[i];
+				this.kinds[amount] = this.kinds[i];
+				amount++;
+			}
+		}
+		this.tileAmount = amount;
+	}
+	
+	private void insertTiles(List<Location> locations, List<Integer> kinds, Change change)
+	{
+		int amount = locations.size();
+		if (amount == 0)
+			return;
+		
+		Integer[] order = new Integer[amount];
+		for (int i = 0; i < amount; i++)
+		{
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> compare(locations.get(a).x, locations.get(a).y, 
+				locations.get(b).x, locations.get(b).y));
+		
+		int newAmount = this.tileAmount + amount;
+		if (newAmount > this.kinds.length)
+		{
+			int capacity = Math.max(newAmount, this.kinds.length + this.kinds.length / 2);
+			this.tileX = Arrays.copyOf(this.tileX, capacity);
+			this.tileY = Arrays.copyOf(this.tileY, capacity);
+			this.kinds = Arrays.copyOf(this.kinds, capacity);
+		}
+		
+		// The new tiles are merged into their places from the end. A new tile is placed after 
+		// the existing tiles at the same position.
+		int existing = this.tileAmount - 1;
+		int target = newAmount - 1;
+		for (int i = amount - 1; i >= 0; i--)
+		{
+			Location location = locations.get(order[i]);
+			while (existing >= 0 && compare(this.tileX[existing], this.tileY[existing], 
+					location.x, location.y) > 0)
+			{
+				this.tileX[target] = this.tileX[existing];
+				this.tileY[target] = this.tileY[existing];
+				this.kinds[target] = this.kinds[existing];
+				existing--;
+				target--;
+			}
+			
+			this.tileX[target] = location.x;
+			this.tileY[target] = location.y;
+			this.kinds[target] = (short) kinds.get(order[i]).intValue();
+			change.insertedIndices[i] = target;
+			target--;
+		}
+		
+		this.tileAmount = newAmount;
+	}
+	
+	// The tiles are ordered from bottom to top, from right to left
+	private static int compare(double x1, double y1, double x2, double y2)
+	{
+		// The y-axis is more defining
+		if (HelpMath.areApproximatelyEqual(y1, y2))
+			return Double.compare(x2, x1);
+		else
+			return Double.compare(y2, y1);
+	}
+	
+	private Pair<Vector3D, Tile> getTilePair(int index)
+	{
+		return new Pair<>(new Vector3D(this.tileX[index], this.tileY[index]), getTile(index));
+	}
+	
+	private void setPalette(Tile[] palette)
+	{
+		this.palette = palette;
+		this.kindWidths = new double[palette.length];
+		this.kindHeights = new double[palette.length];
+		for (int i = 0; i < palette.length; i++)
+		{
+			this.kindWidths[i] = palette[i].getSize().getX();
+			this.kindHeights[i] = palette[i].getSize().getY();
+		}
+	}
+	
 	
 	// NESTED CLASSES	-----------
 	
+	/**
+	 * An edit collects a number of changes, which are then applied to the map all at once. 
+	 * If the same position is changed multiple times, only the last change is applied.
+	 * @author Mikko Hilpinen
+	 * @since 16.10.2026
+	 */
+	public class Edit
+	{
+		// ATTRIBUTES	-----------
+		
+		private Map<Location, Tile> edits = new LinkedHashMap<>();
+		
+		
+		// CONSTRUCTOR	-----------
+		
+		private Edit()
+		{
+			// The edits are created through the map
+		}
+		
+		
+		// OTHER METHODS	-------
+		
+		/**
+		 * Places a tile on the map. If there is already a tile at the exact same position, 
+		 * it is replaced.
+		 * @param position The position of the tile's top left corner
+		 * @param tile The tile that is placed. Null if the tile at the position should be 
+		 * removed.
+		 * @return This edit
+		 */
+		public Edit setTile(Vector3D position, Tile tile)
+		{
+			this.edits.put(new Location(position.getX(), position.getY()), tile);
+			return this;
+		}
+		
+		/**
+		 * Removes a tile from the map
+		 * @param position The position of the tile's top left corner
+		 * @return This edit
+		 */
+		public Edit removeTile(Vector3D position)
+		{
+			return setTile(position, null);
+		}
+		
+		/**
+		 * Applies the changes to the map and informs the map's listeners. The edit is empty 
+		 * afterwards.
+		 */
+		public void apply()
+		{
+			TileMap.this.apply(this.edits);
+			this.edits.clear();
+		}
+	}
+	
+	/**
+	 * A change describes which tiles were removed from a tile map and which were inserted to 
+	 * it. A replaced tile is both removed and inserted. Since the tiles are kept in drawing 
+	 * order, the indices of the other tiles may shift as well. 
+	 * {@link #remapIndices(int[])} can be used for finding their new indices.
+	 * @author Mikko Hilpinen
+	 * @since 16.10.2026
+	 */
+	public static class Change
+	{
+		// ATTRIBUTES	-----------
+		
+		private int[] removedIndices, removedKinds, insertedIndices;
+		private double[] removedX, removedY;
+		
+		
+		// CONSTRUCTOR	-----------
+		
+		private Change(int[] removedIndices, int insertedAmount)
+		{
+			this.removedIndices = removedIndices;
+			this.removedKinds = new int[removedIndices.length];
+			this.removedX = new double[removedIndices.length];
+			this.removedY = new double[removedIndices.length];
+			this.insertedIndices = new int[insertedAmount];
+		}
+		
+		
+		// ACCESSORS	-----------
+		
+		/**
+		 * @return How many tiles were removed from the map
+		 */
+		public int getRemovedAmount()
+		{
+			return this.removedIndices.length;
+		}
+		
+		/**
+		 * @param i The index of the removed tile [0, removed amount[
+		 * @return The index the tile had in the map before it was removed. The removed tiles 
+		 * are in ascending order.
+		 */
+		public int getRemovedIndex(int i)
+		{
+			return this.removedIndices[i];
+		}
+		
+		/**
+		 * @param i The index of the removed tile [0, removed amount[
+		 * @return The x-coordinate of the removed tile's top left corner
+		 */
+		public double getRemovedX(int i)
+		{
+			return this.removedX[i];
+		}
+		
+		/**
+		 * @param i The index of the removed tile [0, removed amount[
+		 * @return The y-coordinate of the removed tile's top left corner
+		 */
+		public double getRemovedY(int i)
+		{
+			return this.removedY[i];
+		}
+		
+		/**
+		 * @param i The index of the removed tile [0, removed amount[
+		 * @return The palette index of the removed tile
+		 */
+		public int getRemovedKind(int i)
+		{
+			return this.removedKinds[i];
+		}
+		
+		/**
+		 * @return How many tiles were inserted to the map
+		 */
+		public int getInsertedAmount()
+		{
+			return this.insertedIndices.length;
+		}
+		
+		/**
+		 * @param i The index of the inserted tile [0, inserted amount[
+		 * @return The index of the inserted tile in the map. The inserted tiles are in 
+		 * ascending order.
+		 */
+		public int getInsertedIndex(int i)
+		{
+			return this.insertedIndices[i];
+		}
+		
+		
+		// OTHER METHODS	-------
+		
+		/**
+		 * Updates the indices of tiles to match the changed map. The indices of the removed 
+		 * tiles are dropped.
+		 * @param indices The indices the tiles had before the change, in ascending order. 
+		 * The array may be modified.
+		 * @return The indices the tiles have after the change, in ascending order. This may 
+		 * be the same array that was provided.
+		 */
+		public int[] remapIndices(int[] indices)
+		{
+			int removed = 0, inserted = 0, amount = 0;
+			for (int i = 0; i < indices.length; i++)
+			{
+				int index = indices[i];
+				while (removed < this.removedIndices.length && 
+						this.removedIndices[removed] < index)
+				{
+					removed++;
+				}
+				if (removed < this.removedIndices.length && 
+						this.removedIndices[removed] == index)
+					continue;
+				
+				// The inserted tiles before the tile move it forward
+				index -= removed;
+				index += inserted;
+				while (inserted < this.insertedIndices.length && 
+						this.insertedIndices[inserted] <= index)
+				{
+					inserted++;
+					index++;
+				}
+				
+				indices[amount++] = index;
+			}
+			
+			return amount == indices.length ? indices : Arrays.copyOf(indices, amount);
+		}
+	}
+	
+	private static class Location
+	{
+		// ATTRIBUTES	-----------
+		
+		private double x, y;
+		
+		
+		// CONSTRUCTOR	-----------
+		
+		public Location(double x, double y)
+		{
+			this.x = x;
+			this.y = y;
+		}
+		
+		
+		// IMPLEMENTED METHODS	---
+		
+		@Override
+		public int hashCode()
+		{
+			return 31 * Double.hashCode(this.x) + Double.hashCode(this.y);
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Location))
+				return false;
+			
+			Location other = (Location) obj;
+			return this.x == other.x && this.y == other.y;
+		}
+	}
+	
+	private class TileView extends AbstractList<Pair<Vector3D, Tile>>
+	{
+		@Override
+		public Pair<Vector3D, Tile> get(int index)
+		{
+			if (index < 0 || index >= TileMap.this.tileAmount)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + 
+						TileMap.this.tileAmount);
+			return getTilePair(index);
+		}
+		
+		@Override
+		public int size()
+		{
+			return TileMap.this.tileAmount;
+		}
+	}
+	
+	// A uniform grid that is used for finding the tiles in a certain area. Each cell 
+	// contains the indices of the tiles overlapping it in ascending order.
+	private static class TileGrid
+	{
+		// ATTRIBUTES	-----------
+		
+		private static final int[] EMPTY = new int[0];
+		
+		private double minX, minY, cellWidth, cellHeight;
+		private int columns = 0, rows = 0, builtAmount;
+		private int[][] cells;
+		
+		
+		// CONSTRUCTOR	-----------
+		
+		public TileGrid(TileMap map)
+		{
+			this.builtAmount = map.tileAmount;
+			if (map.tileAmount == 0)
+				return;
+			
+			// The cells are about the size of an average tile
+			double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			this.minX = Double.POSITIVE_INFINITY;
+			this.minY = Double.POSITIVE_INFINITY;
+			double totalWidth = 0, totalHeight = 0;
+			for (int i = 0; i < map.tileAmount; i++)
+			{
+				int kind = map.getTileKind(i);
+				double width = map.kindWidths[kind];
+				double height = map.kindHeights[kind];
+				
+				this.minX = Math.min(this.minX, map.tileX[i]);
+				this.minY = Math.min(this.minY, map.tileY[i]);
+				maxX = Math.max(maxX, map.tileX[i] + width);
+				maxY = Math.max(maxY, map.tileY[i] + height);
+				totalWidth += width;
+				totalHeight += height;
+			}
+			
+			this.cellWidth = Math.max(1, totalWidth / map.tileAmount);
+			this.cellHeight = Math.max(1, totalHeight / map.tileAmount);
+			
+			// Sparse maps use larger cells so that the grid doesn't grow too large
+			while (true)
+			{
+				this.columns = Math.max(1, (int) Math.ceil((maxX - this.minX) / this.cellWidth));
+				this.rows = Math.max(1, (int) Math.ceil((maxY - this.minY) / this.cellHeight));
+				if ((long) this.columns * this.rows <= 4L * map.tileAmount + 16)
+					break;
+				this.cellWidth *= 2;
+				this.cellHeight *= 2;
+			}
+			
+			// Counts the tiles for each cell first, then places the indices
+			int[] counts = new int[this.columns * this.rows];
+			for (int pass = 0; pass < 2; pass++)
+			{
+				if (pass == 1)
+				{
+					this.cells = new int[counts.length][];
+					for (int i = 0; i < counts.length; i++)
+					{
+						this.cells[i] = counts[i] == 0 ? EMPTY : new int[counts[i]];
+						counts[i] = 0;
+					}
+				}
+				
+				for (int index = 0; index < map.tileAmount; index++)
+				{
+					int kind = map.getTileKind(index);
+					double x = map.tileX[index];
+					double y = map.tileY[index];
+					
+					int firstColumn = column(x);
+					int lastColumn = column(x + map.kindWidths[kind]);
+					int firstRow = row(y);
+					int lastRow = row(y + map.kindHeights[kind]);
+					
+					for (int row = firstRow; row <= lastRow; row++)
+					{
+						for (int column = firstColumn; column <= lastColumn; column++)
+						{
+							int cell = row * this.columns + column;
+							if (pass == 1)
+								this.cells[cell][counts[cell]] = index;
+							counts[cell]++;
+						}
+					}
+				}
+			}
+		}
+		
+		
+		// OTHER METHODS	-------
+		
+		// Returns the grid to use after the tiles have changed. A new grid is built if the new 
+		// tiles don't fit in this one or if the map has grown a lot since this grid was built.
+		public TileGrid update(TileMap map, Change change)
+		{
+			if (this.cells == null || map.tileAmount > 2 * this.builtAmount + 16)
+				return new TileGrid(map);
+			
+			double maxX = this.minX + this.columns * this.cellWidth;
+			double maxY = this.minY + this.rows * this.cellHeight;
+			for (int i = 0; i < change.getInsertedAmount(); i++)
+			{
+				int index = change.getInsertedIndex(i);
+				int kind = map.getTileKind(index);
+				if (map.tileX[index] < this.minX || map.tileY[index] < this.minY || 
+						map.tileX[index] + map.kindWidths[kind] > maxX || 
+						map.tileY[index] + map.kindHeights[kind] > maxY)
+					return new TileGrid(map);
+			}
+			
+			// The indices of the remaining tiles shift and the removed tiles are dropped
+			for (int cell = 0; cell < this.cells.length; cell++)
+			{
+				if (this.cells[cell].length > 0)
+					this.cells[cell] = change.remapIndices(this.cells[cell]);
+			}
+			
+			// The new tiles are added to the cells they overlap
+			for (int i = 0; i < change.getInsertedAmount(); i++)
+			{
+				int index = change.getInsertedIndex(i);
+				int kind = map.getTileKind(index);
+				double x = map.tileX[index];
+				double y = map.tileY[index];
+				
+				for (int row = row(y); row <= row(y + map.kindHeights[kind]); row++)
+				{
+					for (int column = column(x); column <= column(x + map.kindWidths[kind]); 
+							column++)
+					{
+						int cell = row * this.columns + column;
+						this.cells[cell] = insert(this.cells[cell], index);
+					}
+				}
+			}
+			
+			return this;
+		}
+		
+		public int[] getCell(double x, double y)
+		{
+			if (this.cells == null || x < this.minX || y < this.minY)
+				return EMPTY;
+			
+			// The grid's right and bottom edges belong to the last cells
+			if (x > this.minX + this.columns * this.cellWidth || 
+					y > this.minY + this.rows * this.cellHeight)
+				return EMPTY;
+			
+			return this.cells[row(y) * this.columns + column(x)];
+		}
+		
+		// Returns the indices in the cells overlapping the area, without duplicates and in 
+		// ascending order
+		public int[] getCellsIn(double x, double y, double width, double height)
+		{
+			if (this.cells == null || width <= 0 || height <= 0)
+				return EMPTY;
+			
+			int firstColumn = column(x);
+			int lastColumn = column(x + width);
+			int firstRow = row(y);
+			int lastRow = row(y + height);
+			
+			int amount = 0;
+			for (int row = firstRow; row <= lastRow; row++)
+			{
+				for (int column = firstColumn; column <= lastColumn; column++)
+				{
+					amount += this.cells[row * this.columns + column].length;
+				}
+			}
+			
+			int[] indices = new int[amount];
+			int position = 0;
+			for (int row = firstRow; row <= lastRow; row++)
+			{
+				for (int column = firstColumn; column <= lastColumn; column++)
+				{
+					int[] cell = this.cells[row * this.columns + column];
+					System.arraycopy(cell, 0, indices, position, cell.length);
+					position += cell.length;
+				}
+			}
+			
+			// A tile may overlap multiple cells
+			Arrays.sort(indices);
+			int unique = 0;
+			for (int i = 0; i < indices.length; i++)
+			{
+				if (unique == 0 || indices[unique - 1] != indices[i])
+					indices[unique++] = indices[i];
+			}
+			
+			return unique == indices.length ? indices : Arrays.copyOf(indices, unique);
+		}
+		
+		// Adds an index to a cell, keeping the ascending order
+		private static int[] insert(int[] cell, int index)
+		{
+			int position = Arrays.binarySearch(cell, index);
+			if (position >= 0)
+				return cell;
+			
+			position = -position - 1;
+			int[] indices = new int[cell.length + 1];
+			System.arraycopy(cell, 0, indices, 0, position);
+			indices[position] = index;
+			System.arraycopy(cell, position, indices, position + 1, cell.length - position);
+			return indices;
+		}
+		
+		// The coordinates are clamped to the grid
+		private int column(double x)
+		{
+			return Math.max(0, Math.min(this.columns - 1, (int) ((x - this.minX) / this.cellWidth)));
+		}
+		
+		private int row(double y)
+		{
+			return Math.max(0, Math.min(this.rows - 1, (int) ((y - this.minY) / this.cellHeight)));
+		}
+	}
+	
 	private static class PositionComparator implements Comparator<Pair<Vector3D, ?>>
 	{
 		@Override
 		public int compare(Pair<Vector3D, ?> o1, Pair<Vector3D, ?> o2)
 		{
-			// The order is from bottom to top, from right to left
-			// The y-axis is more defining
-			double yDifference =  o2.getFirst().getY() - o1.getFirst().getY();
-			
-			if (HelpMath.areApproximatelyEqual(yDifference, 0))
-				return (int) (o2.getFirst().getX() - o1.getFirst().getX());
-			else
-				return (int) yDifference;
+			return TileMap.compare(o1.getFirst().getX(), o1.getFirst().getY(), 
+					o2.getFirst().getX(), o2.getFirst().getY());
 		}	
 	}
 }
@@ -1,158 +1,1048 @@
-package utopia.vision.resource;
-
-import java.awt.Graphics2D;
-import java.util.ArrayList;
-import java.util.List;
-
-import utopia.arc.resource.BankBank;
-import utopia.flow.structure.Pair;
-import utopia.genesis.util.Vector3D;
-
-/**
- * This class is able to handle the drawing of a tile map. It also offers an interface for 
- * animation.
- * @author Mikko Hilpinen
- * @since 15.6.2016
- */
-public class TileMapDrawer
-{
-	// ATTRIBUTES	----------------
-	
-	private List<SpriteDrawer> drawers = new ArrayList<>();
-	private Vector3D forcedOrigin = null;
-	private TileMap map;
-	
-	
-	// CONSTRUCTOR	----------------
-	
-	/**
-	 * Creates a new tile map drawer
-	 * @param map The map that is drawn
-	 * @param spriteResources The sprite resources used for finding the correct sprites for 
-	 * each tile
-	 */
-	public TileMapDrawer(TileMap map, BankBank<Sprite> spriteResources)
-	{
-		this.map = map;
-		createDrawers(spriteResources);
-	}
-
-	/**
-	 * Creates a new tile map drawer
-	 * @param map The map that is drawn
-	 * @param spriteResources The sprite resources used for finding the correct sprites for 
-	 * each tile
-	 * @param forcedOrigin The origin the drawer will use when it draws the map. Use null for 
-	 * the map's default origin
-	 */
-	public TileMapDrawer(TileMap map, BankBank<Sprite> spriteResources, Vector3D forcedOrigin)
-	{
-		this.map = map;
-		this.forcedOrigin = forcedOrigin;
-		createDrawers(spriteResources);
-	}
-	
-	
-	// ACCESSORS	-----------------
-	
-	/**
-	 * @return The tile map used by this drawer
-	 */
-	public TileMap getTileMap()
-	{
-		return this.map;
-	}
-	
-	/**
-	 * Changes the tile map used by this drawer
-	 * @param map The new map to be used
-	 * @param spriteResources The sprite resources used for finding correct tile sprites
-	 */
-	public void setTileMap(TileMap map, BankBank<Sprite> spriteResources)
-	{
-		this.map = map;
-		createDrawers(spriteResources);
-	}
-	
-	/**
-	 * @return The origin used when the drawer draws a tile map
-	 */
-	public Vector3D getOrigin()
-	{
-		if (this.forcedOrigin == null)
-		{
-			if (this.map == null)
-				return Vector3D.ZERO;
-			else
-				return this.map.getOrigin();
-		}
-		else
-			return this.forcedOrigin;
-	}
-	
-	/**
-	 * Changes the origin used when drawing the map
-	 * @param origin The new origin that is used. Use null for the map's default origin.
-	 */
-	public void setOrigin(Vector3D origin)
-	{
-		Vector3D previousOrigin = getOrigin();
-		this.forcedOrigin = origin;
-		
-		Vector3D translation = getOrigin().minus(previousOrigin);
-		// Translates each drawer
-		for (SpriteDrawer drawer : this.drawers)
-		{
-			drawer.setOrigin(drawer.getOrigin().plus(translation));
-		}
-	}
-	
-	
-	// OTHER METHODS	-------------
-	
-	/**
-	 * Draws the tile map
-	 * @param g2d The graphics object used for doing the actual drawing
-	 */
-	public void drawMap(Graphics2D g2d)
-	{
-		for (SpriteDrawer drawer : this.drawers)
-		{
-			drawer.drawSprite(g2d);
-		}
-	}
-	
-	/**
-	 * Animates the tiles in this map
-	 * @param duration The duration of the passed animation in steps
-	 */
-	public void animate(double duration)
-	{
-		for (SpriteDrawer drawer : this.drawers)
-		{
-			drawer.animate(duration);
-		}
-	}
-	
-	private void createDrawers(BankBank<Sprite> spriteBanks)
-	{
-		// Creates a sprite drawer for each tile
-		this.drawers.clear();
-		if (this.map != null)
-		{
-			for (Pair<Vector3D, Tile> tile : this.map.getTiles())
-			{
-				SpriteDrawer drawer = new SpriteDrawer(spriteBanks.get(
-						tile.getSecond().getSpriteBankName(), 
-						tile.getSecond().getSpriteName()).withSize(tile.getSecond().getSize()), 
-						getOrigin().minus(tile.getFirst()));
-				
-				drawer.setFrameIndex(tile.getSecond().getStartFrameIndex());
-				if (!tile.getSecond().isAnimated())
-					drawer.setAnimationSpeed(0);
-				
-				this.drawers.add(drawer);
-			}
-		}
-	}
-}
+package utopia.vision.resource;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import utopia.arc.resource.BankBank;
+import utopia.genesis.util.Vector3D;
+import utopia.vision.util.CompatibleImages;
+
+/**
+ * This class is able to handle the drawing of a tile map. It also offers an interface for 
+ * animation. The tiles are stored as flyweights: each distinct sprite is held only once and 
+ * the tiles that use the same sprite at the same speed share a single animation clock, so 
+ * the cost of animating the map depends from the number of distinct sprites rather than the 
+ * number of tiles. The drawer follows the changes made to the map and updates only the 
+ * changed tiles.
+ * @author Mikko Hilpinen
+ * @since 15.6.2016
+ */
+public class TileMapDrawer
+{
+	// ATTRIBUTES	----------------
+	
+	// Above this many dirty tiles, the changes are collected to coarser cells instead
+	private static final int MAX_DIRTY_AREAS = 64;
+	// The size of the cells the dirty areas are merged into
+	private static final int DIRTY_CELL_SIZE = 128;
+	// The approximate size of the images the static tiles are baked into
+	private static final int BAKED_PIECE_SIZE = 512;
+	
+	private Vector3D forcedOrigin = null;
+	private TileMap map;
+	private BankBank<Sprite> spriteResources;
+	// The map only holds the drawer weakly, so a drawer that is dropped can be collected 
+	// while the map is still in use
+	private TileMapListener listener = new DrawerListener(this);
+	
+	private int tileAmount = 0, kindAmount = 0;
+	private int[] kindSprites, kindStartFrames, kindClocks;
+	private List<Sprite> sprites;
+	private Map<SpriteKey, Integer> spriteIds;
+	private List<AnimationClock> clocks;
+	// The tiles that follow each clock, in drawing order
+	private List<int[]> clockTiles;
+	private Map<ClockKey, Integer> clockIds;
+	
+	private DrawMode drawMode = DrawMode.DIRECT;
+	
+	private int[] animatedTiles;
+	private BufferedImage[] bakedPieces = null;
+	private Rectangle[] bakedPieceBounds = null;
+	
+	private BufferedImage backingImage = null;
+	private Rectangle backingBounds = null;
+	private List<Rectangle> dirtyAreas = new ArrayList<>();
+	// The dirty cells of the backing image, used once there are too many dirty areas
+	private boolean[] dirtyCells = null;
+	private int dirtyCellColumns = 0, dirtyCellRows = 0, dirtyCellAmount = 0;
+	private boolean fullRepaintNeeded = false;
+	
+	
+	// CONSTRUCTOR	----------------
+	
+	/**
+	 * Creates a new tile map drawer
+	 * @param map The map that is drawn
+	 * @param spriteResources The sprite resources used for finding the correct sprites for 
+	 * each tile
+	 */
+	public TileMapDrawer(TileMap map, BankBank<Sprite> spriteResources)
+	{
+		setTileMap(map, spriteResources);
+	}
+	
+	/**
+	 * Creates a new tile map drawer
+	 * @param map The map that is drawn
+	 * @param spriteResources The sprite resources used for finding the correct sprites for 
+	 * each tile
+	 * @param forcedOrigin The origin the drawer will use when it draws the map. Use null for 
+	 * the map's default origin
+	 */
+	public TileMapDrawer(TileMap map, BankBank<Sprite> spriteResources, Vector3D forcedOrigin)
+	{
+		this.forcedOrigin = forcedOrigin;
+		setTileMap(map, spriteResources);
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return The tile map used by this drawer
+	 */
+	public TileMap getTileMap()
+	{
+		return this.map;
+	}
+	
+	/**
+	 * Changes the tile map used by this drawer. The drawer follows the changes made to the 
+	 * map until it is given another map. The map doesn't keep the drawer in memory.
+	 * @param map The new map to be used
+	 * @param spriteResources The sprite resources used for finding correct tile sprites
+	 */
+	public void setTileMap(TileMap map, BankBank<Sprite> spriteResources)
+	{
+		if (this.map != null)
+			this.map.removeListener(this.listener);
+		
+		this.map = map;
+		this.spriteResources = spriteResources;
+		createTiles();
+		
+		if (map != null)
+			map.addListener(this.listener);
+	}
+	
+	/**
+	 * @return The origin used when the drawer draws a tile map
+	 */
+	public Vector3D getOrigin()
+	{
+		if (this.forcedOrigin == null)
+		{
+			if (this.map == null)
+				return Vector3D.ZERO;
+			else
+				return this.map.getOrigin();
+		}
+		else
+			return this.forcedOrigin;
+	}
+	
+	/**
+	 * Changes the origin used when drawing the map
+	 * @param origin The new origin that is used. Use null for the map's default origin.
+	 */
+	public void setOrigin(Vector3D origin)
+	{
+		this.forcedOrigin = origin;
+		invalidate();
+	}
+	
+	/**
+	 * Changes the way the map is drawn
+	 * @param mode The new drawing mode. {@link DrawMode#DIRECT} by default.
+	 */
+	public void setDrawMode(DrawMode mode)
+	{
+		this.drawMode = mode;
+		invalidate();
+	}
+	
+	/**
+	 * @return The way the map is currently drawn
+	 */
+	public DrawMode getDrawMode()
+	{
+		return this.drawMode;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Draws the tile map
+	 * @param g2d The graphics object used for doing the actual drawing
+	 */
+	public void drawMap(Graphics2D g2d)
+	{
+		switch (this.drawMode)
+		{
+			case BACKING_IMAGE:
+				updateBackingImage();
+				if (this.backingImage != null)
+					g2d.drawImage(this.backingImage, this.backingBounds.x, this.backingBounds.y, 
+							null);
+				break;
+			case BAKED_STATIC_LAYER:
+				bakeStaticLayer();
+				for (int i = 0; i < this.bakedPieces.length; i++)
+				{
+					g2d.drawImage(this.bakedPieces[i], this.bakedPieceBounds[i].x, 
+							this.bakedPieceBounds[i].y, null);
+				}
+				
+				// The animated tiles are drawn on top of the static layer
+				Vector3D origin = getOrigin();
+				for (int index : this.animatedTiles)
+				{
+					drawTile(g2d, index, origin);
+				}
+				break;
+			default: 
+				origin = getOrigin();
+				for (int i = 0; i < this.tileAmount; i++)
+				{
+					drawTile(g2d, i, origin);
+				}
+		}
+	}
+	
+	/**
+	 * Draws the visible part of the tile map. Only the tiles overlapping the visible area are 
+	 * drawn.
+	 * @param g2d The graphics object used for doing the actual drawing
+	 * @param visiblePosition The top left corner of the visible area, in the same coordinate 
+	 * system the map is drawn in (where the map's origin is at (0, 0))
+	 * @param visibleSize The size of the visible area
+	 */
+	public void drawMap(Graphics2D g2d, Vector3D visiblePosition, Vector3D visibleSize)
+	{
+		if (this.drawMode == DrawMode.BACKING_IMAGE)
+		{
+			updateBackingImage();
+			if (this.backingImage == null)
+				return;
+			
+			// Draws only the visible part of the backing image
+			Rectangle visibleArea = new Rectangle( 
+					(int) Math.floor(visiblePosition.getX()), 
+					(int) Math.floor(visiblePosition.getY()), 
+					(int) Math.ceil(visibleSize.getX()) + 1, 
+					(int) Math.ceil(visibleSize.getY()) + 1).intersection(this.backingBounds);
+			if (!visibleArea.isEmpty())
+			{
+				int sourceX = visibleArea.x - this.backingBounds.x;
+				int sourceY = visibleArea.y - this.backingBounds.y;
+				g2d.drawImage(this.backingImage, visibleArea.x, visibleArea.y, 
+						visibleArea.x + visibleArea.width, visibleArea.y + visibleArea.height, 
+						sourceX, sourceY, sourceX + visibleArea.width, 
+						sourceY + visibleArea.height, null);
+			}
+			return;
+		}
+		
+		boolean staticLayerBaked = this.drawMode == DrawMode.BAKED_STATIC_LAYER;
+		if (staticLayerBaked)
+		{
+			bakeStaticLayer();
+			Rectangle visibleArea = new Rectangle( 
+					(int) Math.floor(visiblePosition.getX()), 
+					(int) Math.floor(visiblePosition.getY()), 
+					(int) Math.ceil(visibleSize.getX()) + 1, 
+					(int) Math.ceil(visibleSize.getY()) + 1);
+			for (int i = 0; i < this.bakedPieces.length; i++)
+			{
+				if (this.bakedPieceBounds[i].intersects(visibleArea))
+					g2d.drawImage(this.bakedPieces[i], this.bakedPieceBounds[i].x, 
+							this.bakedPieceBounds[i].y, null);
+			}
+		}
+		
+		Vector3D origin = getOrigin();
+		for (int index : findTileIndices(visiblePosition.getX(), visiblePosition.getY(), 
+				visibleSize.getX(), visibleSize.getY()))
+		{
+			// The static tiles are already drawn when the static layer is baked
+			if (!staticLayerBaked || isAnimated(index))
+				drawTile(g2d, index, origin);
+		}
+	}
+	
+	/**
+	 * Marks the whole map to be repainted to the backing image or to the baked static layer 
+	 * the next time it is drawn. This is done automatically when the origin or the map 
+	 * changes.
+	 * @see #setDrawMode(DrawMode)
+	 */
+	public void invalidate()
+	{
+		this.backingImage = null;
+		this.bakedPieces = null;
+	}
+	
+	/**
+	 * Animates the tiles in this map
+	 * @param duration The duration of the passed animation in steps
+	 */
+	public void animate(double duration)
+	{
+		for (int i = 0; i < this.clocks.size(); i++)
+		{
+			if (this.clocks.get(i).animate(duration) && this.drawMode == DrawMode.BACKING_IMAGE)
+				invalidateTiles(this.clockTiles.get(i));
+		}
+	}
+	
+	private void createTiles()
+	{
+		this.tileAmount = this.map == null ? 0 : this.map.getTileAmount();
+		this.kindAmount = 0;
+		this.kindSprites = new int[0];
+		this.kindStartFrames = new int[0];
+		this.kindClocks = new int[0];
+		this.sprites = new ArrayList<>();
+		this.spriteIds = new HashMap<>();
+		this.clocks = new ArrayList<>();
+		this.clockTiles = new ArrayList<>();
+		this.clockIds = new HashMap<>();
+		
+		addKinds();
+		
+		// Each clock remembers its tiles so that they can be repainted when the frame changes
+		int[] allTiles = new int[this.tileAmount];
+		for (int i = 0; i < this.tileAmount; i++)
+		{
+			allTiles[i] = i;
+		}
+		this.animatedTiles = new int[0];
+		addTiles(allTiles);
+		
+		invalidate();
+	}
+	
+	private void addKinds()
+	{
+		int kindAmount = this.map == null ? 0 : this.map.getPaletteSize();
+		if (kindAmount == this.kindAmount)
+			return;
+		
+		this.kindSprites = Arrays.copyOf(this.kindSprites, kindAmount);
+		this.kindStartFrames = Arrays.copyOf(this.kindStartFrames, kindAmount);
+		this.kindClocks = Arrays.copyOf(this.kindClocks, kindAmount);
+		
+		// The tile state is resolved once for each distinct tile in the map's palette. Each 
+		// distinct sprite + size combination is stored only once and the animated tiles that 
+		// use the same sprite at the same speed share a clock.
+		for (int kind = this.kindAmount; kind < kindAmount; kind++)
+		{
+			Tile tile = this.map.getPaletteTile(kind);
+			
+			Sprite sprite = this.spriteResources.get(tile.getSpriteBankName(), 
+					tile.getSpriteName());
+			SpriteKey spriteKey = new SpriteKey(sprite, tile.getSize());
+			Integer spriteId = this.spriteIds.get(spriteKey);
+			if (spriteId == null)
+			{
+				spriteId = this.sprites.size();
+				this.sprites.add(sprite.withSize(tile.getSize()));
+				this.spriteIds.put(spriteKey, spriteId);
+			}
+			this.kindSprites[kind] = spriteId;
+			
+			Sprite sizedSprite = this.sprites.get(spriteId);
+			this.kindStartFrames[kind] = Math.floorMod(tile.getStartFrameIndex(), 
+					sizedSprite.getLength());
+			
+			if (tile.isAnimated() && sizedSprite.getDefaultAnimationSpeed() != 0)
+			{
+				ClockKey clockKey = new ClockKey(sprite, sizedSprite.getDefaultAnimationSpeed());
+				Integer clockId = this.clockIds.get(clockKey);
+				if (clockId == null)
+				{
+					clockId = this.clocks.size();
+					this.clocks.add(new AnimationClock(sizedSprite.getLength(), 
+							sizedSprite.getDefaultAnimationSpeed()));
+					this.clockTiles.add(new int[0]);
+					this.clockIds.put(clockKey, clockId);
+				}
+				this.kindClocks[kind] = clockId;
+			}
+			else
+				this.kindClocks[kind] = -1;
+		}
+		
+		this.kindAmount = kindAmount;
+	}
+	
+	// Adds the animated tiles among the provided ones to the clocks and to the animated tile 
+	// list. All of the lists are kept in drawing order.
+	private void addTiles(int[] tiles)
+	{
+		int[] clockTileAmounts = new int[this.clocks.size()];
+		int animatedAmount = 0;
+		for (int index : tiles)
+		{
+			int clockId = this.kindClocks[this.map.getTileKind(index)];
+			if (clockId >= 0)
+			{
+				clockTileAmounts[clockId]++;
+				animatedAmount++;
+			}
+		}
+		if (animatedAmount == 0)
+			return;
+		
+		int[][] clockTiles = new int[clockTileAmounts.length][];
+		for (int i = 0; i < clockTiles.length; i++)
+		{
+			clockTiles[i] = new int[clockTileAmounts[i]];
+			clockTileAmounts[i] = 0;
+		}
+		int[] animated = new int[animatedAmount];
+		animatedAmount = 0;
+		for (int index : tiles)
+		{
+			int clockId = this.kindClocks[this.map.getTileKind(index)];
+			if (clockId >= 0)
+			{
+				clockTiles[clockId][clockTileAmounts[clockId]++] = index;
+				animated[animatedAmount++] = index;
+			}
+		}
+		
+		for (int i = 0; i < clockTiles.length; i++)
+		{
+			this.clockTiles.set(i, merge(this.clockTiles.get(i), clockTiles[i]));
+		}
+		this.animatedTiles = merge(this.animatedTiles, animated);
+	}
+	
+	private static int[] merge(int[] first, int[] second)
+	{
+		if (second.length == 0)
+			return first;
+		
+		int[] merged = new int[first.length + second.length];
+		int i = 0, j = 0;
+		for (int k = 0; k < merged.length; k++)
+		{
+			if (j >= second.length || (i < first.length && first[i] < second[j]))
+				merged[k] = first[i++];
+			else
+				merged[k] = second[j++];
+		}
+		return merged;
+	}
+	
+	private void onTilesChanged(TileMap map, TileMap.Change change)
+	{
+		if (map != this.map)
+			return;
+		
+		// Only the new tile kinds are resolved
+		addKinds();
+		this.tileAmount = map.getTileAmount();
+		
+		// The tile lists are updated to match the new indices, after which the new tiles are 
+		// added to them
+		for (int i = 0; i < this.clockTiles.size(); i++)
+		{
+			this.clockTiles.set(i, change.remapIndices(this.clockTiles.get(i)));
+		}
+		this.animatedTiles = change.remapIndices(this.animatedTiles);
+		
+		int[] inserted = new int[change.getInsertedAmount()];
+		for (int i = 0; i < inserted.length; i++)
+		{
+			inserted[i] = change.getInsertedIndex(i);
+		}
+		addTiles(inserted);
+		
+		// Only the changed areas are repainted
+		if (this.backingImage == null && this.bakedPieces == null)
+			return;
+		
+		Vector3D origin = getOrigin();
+		List<Rectangle> changedAreas = new ArrayList<>();
+		List<Rectangle> staticAreas = new ArrayList<>();
+		for (int i = 0; i < change.getRemovedAmount(); i++)
+		{
+			int kind = change.getRemovedKind(i);
+			Rectangle area = boundsOf(kind, change.getRemovedX(i), change.getRemovedY(i), 
+					origin);
+			changedAreas.add(area);
+			if (this.kindClocks[kind] < 0)
+				staticAreas.add(area);
+		}
+		for (int index : inserted)
+		{
+			Rectangle area = boundsOf(index, origin);
+			changedAreas.add(area);
+			if (!isAnimated(index))
+				staticAreas.add(area);
+		}
+		
+		if (this.backingImage != null)
+		{
+			for (Rectangle area : changedAreas)
+			{
+				if (!this.backingBounds.contains(area))
+				{
+					this.backingImage = null;
+					break;
+				}
+			}
+			if (this.backingImage != null)
+				invalidateAreas(changedAreas);
+		}
+		
+		if (this.bakedPieces != null)
+		{
+			for (Rectangle area : staticAreas)
+			{
+				if (!repaintBakedArea(area))
+				{
+					this.bakedPieces = null;
+					break;
+				}
+			}
+		}
+	}
+	
+	private boolean isAnimated(int tileIndex)
+	{
+		return this.kindClocks[this.map.getTileKind(tileIndex)] >= 0;
+	}
+	
+	private int getFrameIndex(int kind)
+	{
+		int clockId = this.kindClocks[kind];
+		if (clockId < 0)
+			return this.kindStartFrames[kind];
+		else
+			return this.clocks.get(clockId).getFrameIndex(this.kindStartFrames[kind]);
+	}
+	
+	private void drawTile(Graphics2D g2d, int index, Vector3D origin)
+	{
+		// The tile's top left corner is placed at its position relative to the origin
+		int kind = this.map.getTileKind(index);
+		double x = this.map.getTileX(index) - origin.getX();
+		double y = this.map.getTileY(index) - origin.getY();
+		
+		g2d.translate(x, y);
+		Sprite.drawSprite(this.sprites.get(this.kindSprites[kind]), getFrameIndex(kind), 
+				Vector3D.ZERO, g2d);
+		g2d.translate(-x, -y);
+	}
+	
+	private void bakeStaticLayer()
+	{
+		if (this.bakedPieces != null)
+			return;
+		
+		// Finds the area covered by the static tiles
+		Rectangle bounds = null;
+		Vector3D origin = getOrigin();
+		for (int i = 0; i < this.tileAmount; i++)
+		{
+			if (!isAnimated(i))
+			{
+				Rectangle tileBounds = boundsOf(i, origin);
+				if (bounds == null)
+					bounds = tileBounds;
+				else
+					bounds.add(tileBounds);
+			}
+		}
+		
+		if (bounds == null || bounds.isEmpty())
+		{
+			this.bakedPieces = new BufferedImage[0];
+			this.bakedPieceBounds = new Rectangle[0];
+			return;
+		}
+		
+		// The pieces are aligned with the tiles, if possible
+		Vector3D tileSize = this.sprites.get(this.kindSprites[this.map.getTileKind(0)]).getSize();
+		int pieceWidth = pieceSize(tileSize.getX());
+		int pieceHeight = pieceSize(tileSize.getY());
+		
+		List<BufferedImage> pieces = new ArrayList<>();
+		List<Rectangle> pieceBounds = new ArrayList<>();
+		for (int y = bounds.y; y < bounds.y + bounds.height; y += pieceHeight)
+		{
+			for (int x = bounds.x; x < bounds.x + bounds.width; x += pieceWidth)
+			{
+				Rectangle piece = new Rectangle(x, y, Math.min(pieceWidth, bounds.x + 
+						bounds.width - x), Math.min(pieceHeight, bounds.y + bounds.height - y));
+				
+				// Empty pieces are skipped
+				BufferedImage image = null;
+				Graphics2D g2d = null;
+				for (int index : findTileIndices(piece.x, piece.y, piece.width, piece.height))
+				{
+					if (!isAnimated(index))
+					{
+						if (image == null)
+						{
+							image = CompatibleImages.create(piece.width, piece.height);
+							g2d = image.createGraphics();
+							g2d.translate(-piece.x, -piece.y);
+						}
+						drawTile(g2d, index, origin);
+					}
+				}
+				
+				if (image != null)
+				{
+					g2d.dispose();
+					pieces.add(image);
+					pieceBounds.add(piece);
+				}
+			}
+		}
+		
+		this.bakedPieces = pieces.toArray(new BufferedImage[pieces.size()]);
+		this.bakedPieceBounds = pieceBounds.toArray(new Rectangle[pieceBounds.size()]);
+	}
+	
+	// Repaints the static tiles in an area of the baked layer. Returns false if the area is 
+	// not fully covered by the baked pieces, in which case the layer needs to be baked again.
+	private boolean repaintBakedArea(Rectangle area)
+	{
+		long coveredArea = 0;
+		for (Rectangle pieceBounds : this.bakedPieceBounds)
+		{
+			Rectangle part = pieceBounds.intersection(area);
+			if (!part.isEmpty())
+				coveredArea += (long) part.width * part.height;
+		}
+		if (coveredArea < (long) area.width * area.height)
+			return false;
+		
+		Vector3D origin = getOrigin();
+		for (int i = 0; i < this.bakedPieces.length; i++)
+		{
+			Rectangle part = this.bakedPieceBounds[i].intersection(area);
+			if (part.isEmpty())
+				continue;
+			
+			Graphics2D g2d = this.bakedPieces[i].createGraphics();
+			g2d.translate(-this.bakedPieceBounds[i].x, -this.bakedPieceBounds[i].y);
+			g2d.clip(part);
+			g2d.setComposite(AlphaComposite.Clear);
+			g2d.fill(part);
+			g2d.setComposite(AlphaComposite.SrcOver);
+			
+			for (int index : findTileIndices(part.x, part.y, part.width, part.height))
+			{
+				if (!isAnimated(index))
+					drawTile(g2d, index, origin);
+			}
+			g2d.dispose();
+		}
+		
+		return true;
+	}
+	
+	private static int pieceSize(double tileSize)
+	{
+		if (tileSize < 1 || tileSize != Math.floor(tileSize) || tileSize > BAKED_PIECE_SIZE)
+			return BAKED_PIECE_SIZE;
+		
+		int tiles = BAKED_PIECE_SIZE / (int) tileSize;
+		return tiles * (int) tileSize;
+	}
+	
+	private void updateBackingImage()
+	{
+		boolean fullRepaint;
+		synchronized (this.dirtyAreas)
+		{
+			fullRepaint = this.fullRepaintNeeded;
+			this.fullRepaintNeeded = false;
+		}
+		
+		if (this.backingImage == null)
+		{
+			synchronized (this.dirtyAreas)
+			{
+				this.dirtyAreas.clear();
+				this.dirtyCells = null;
+				this.dirtyCellAmount = 0;
+			}
+			
+			// The image covers all of the tiles
+			Rectangle bounds = null;
+			Vector3D origin = getOrigin();
+			for (int i = 0; i < this.tileAmount; i++)
+			{
+				Rectangle tileBounds = boundsOf(i, origin);
+				if (bounds == null)
+					bounds = tileBounds;
+				else
+					bounds.add(tileBounds);
+			}
+			
+			if (bounds == null || bounds.isEmpty())
+				return;
+			
+			this.backingBounds = bounds;
+			this.backingImage = CompatibleImages.create(bounds.width, bounds.height);
+			synchronized (this.dirtyAreas)
+			{
+				this.dirtyCellColumns = (bounds.width + DIRTY_CELL_SIZE - 1) / DIRTY_CELL_SIZE;
+				this.dirtyCellRows = (bounds.height + DIRTY_CELL_SIZE - 1) / DIRTY_CELL_SIZE;
+				this.dirtyCells = new boolean[this.dirtyCellColumns * this.dirtyCellRows];
+			}
+			paintBackingImage(null);
+		}
+		else if (fullRepaint)
+			paintBackingImage(new Area(this.backingBounds));
+		else
+		{
+			// Only the changed areas are repainted
+			Area dirtyArea = null;
+			synchronized (this.dirtyAreas)
+			{
+				if (!this.dirtyAreas.isEmpty() || this.dirtyCellAmount > 0)
+				{
+					dirtyArea = new Area();
+					for (Rectangle area : this.dirtyAreas)
+					{
+						dirtyArea.add(new Area(area));
+					}
+					this.dirtyAreas.clear();
+					
+					// The consecutive dirty cells on each row are added as a single area
+					if (this.dirtyCellAmount > 0)
+					{
+						for (int row = 0; row < this.dirtyCellRows; row++)
+						{
+							int start = -1;
+							for (int column = 0; column <= this.dirtyCellColumns; column++)
+							{
+								boolean dirty = column < this.dirtyCellColumns && 
+										this.dirtyCells[row * this.dirtyCellColumns + column];
+								if (dirty && start < 0)
+									start = column;
+								else if (!dirty && start >= 0)
+								{
+									dirtyArea.add(new Area(new Rectangle(
+											this.backingBounds.x + start * DIRTY_CELL_SIZE, 
+											this.backingBounds.y + row * DIRTY_CELL_SIZE, 
+											(column - start) * DIRTY_CELL_SIZE, 
+											DIRTY_CELL_SIZE)));
+									start = -1;
+								}
+							}
+						}
+						Arrays.fill(this.dirtyCells, false);
+						this.dirtyCellAmount = 0;
+					}
+				}
+			}
+			
+			if (dirtyArea != null)
+				paintBackingImage(dirtyArea);
+		}
+	}
+	
+	private void paintBackingImage(Area area)
+	{
+		Graphics2D g2d = this.backingImage.createGraphics();
+		g2d.translate(-this.backingBounds.x, -this.backingBounds.y);
+		Vector3D origin = getOrigin();
+		
+		// The painted area is cleared first. The tiles overlapping the area are then drawn
+		// in their normal order.
+		if (area != null)
+		{
+			g2d.clip(area);
+			g2d.setComposite(AlphaComposite.Clear);
+			g2d.fill(area);
+			g2d.setComposite(AlphaComposite.SrcOver);
+		}
+		
+		if (area == null)
+		{
+			for (int i = 0; i < this.tileAmount; i++)
+			{
+				drawTile(g2d, i, origin);
+			}
+		}
+		else
+		{
+			Rectangle bounds = area.getBounds();
+			for (int index : findTileIndices(bounds.x, bounds.y, bounds.width, bounds.height))
+			{
+				if (area.intersects(boundsOf(index, origin)))
+					drawTile(g2d, index, origin);
+			}
+		}
+		
+		g2d.dispose();
+	}
+	
+	private void invalidateTiles(int[] tiles)
+	{
+		synchronized (this.dirtyAreas)
+		{
+			if (this.fullRepaintNeeded)
+				return;
+			
+			Vector3D origin = getOrigin();
+			for (int index : tiles)
+			{
+				addDirtyArea(boundsOf(index, origin));
+			}
+			checkDirtyCoverage();
+		}
+	}
+	
+	private void invalidateAreas(List<Rectangle> areas)
+	{
+		synchronized (this.dirtyAreas)
+		{
+			if (this.fullRepaintNeeded)
+				return;
+			
+			for (Rectangle area : areas)
+			{
+				addDirtyArea(area);
+			}
+			checkDirtyCoverage();
+		}
+	}
+	
+	// Must be called while holding the dirty areas' lock
+	private void addDirtyArea(Rectangle area)
+	{
+		// Areas are kept separate until there are too many of them, after which they're 
+		// merged into the dirty cells
+		if (this.dirtyCellAmount == 0 && this.dirtyAreas.size() < MAX_DIRTY_AREAS)
+		{
+			this.dirtyAreas.add(area);
+			return;
+		}
+		if (this.dirtyCells == null)
+		{
+			this.dirtyAreas.clear();
+			this.fullRepaintNeeded = true;
+			return;
+		}
+		
+		for (Rectangle previous : this.dirtyAreas)
+		{
+			markDirtyCells(previous);
+		}
+		this.dirtyAreas.clear();
+		markDirtyCells(area);
+	}
+	
+	private void markDirtyCells(Rectangle area)
+	{
+		int left = Math.max(0, (area.x - this.backingBounds.x) / DIRTY_CELL_SIZE);
+		int top = Math.max(0, (area.y - this.backingBounds.y) / DIRTY_CELL_SIZE);
+		int right = Math.min(this.dirtyCellColumns - 1, 
+				(area.x + area.width - 1 - this.backingBounds.x) / DIRTY_CELL_SIZE);
+		int bottom = Math.min(this.dirtyCellRows - 1, 
+				(area.y + area.height - 1 - this.backingBounds.y) / DIRTY_CELL_SIZE);
+		
+		for (int row = top; row <= bottom; row++)
+		{
+			for (int column = left; column <= right; column++)
+			{
+				int cell = row * this.dirtyCellColumns + column;
+				if (!this.dirtyCells[cell])
+				{
+					this.dirtyCells[cell] = true;
+					this.dirtyCellAmount++;
+				}
+			}
+		}
+	}
+	
+	// The whole image is repainted once most of it is dirty anyway
+	private void checkDirtyCoverage()
+	{
+		if (this.dirtyCells != null && this.dirtyCellAmount * 4 > this.dirtyCells.length * 3)
+		{
+			Arrays.fill(this.dirtyCells, false);
+			this.dirtyCellAmount = 0;
+			this.fullRepaintNeeded = true;
+		}
+	}
+	
+	// Finds the tiles overlapping an area in the drawing coordinates, in drawing order
+	private int[] findTileIndices(double x, double y, double width, double height)
+	{
+		if (this.map == null)
+			return new int[0];
+		
+		// The map uses its own coordinate system
+		Vector3D origin = getOrigin();
+		return this.map.getTileIndicesIn(x + origin.getX(), y + origin.getY(), width, height);
+	}
+	
+	// The area covered by a tile, in the drawing coordinates
+	private Rectangle boundsOf(int index, Vector3D origin)
+	{
+		return boundsOf(this.map.getTileKind(index), this.map.getTileX(index), 
+				this.map.getTileY(index), origin);
+	}
+	
+	private Rectangle boundsOf(int kind, double tileX, double tileY, Vector3D origin)
+	{
+		Vector3D size = this.sprites.get(this.kindSprites[kind]).getSize();
+		double left = tileX - origin.getX();
+		double top = tileY - origin.getY();
+		
+		int x = (int) Math.floor(left);
+		int y = (int) Math.floor(top);
+		return new Rectangle(x, y, (int) Math.ceil(left + size.getX()) - x, 
+				(int) Math.ceil(top + size.getY()) - y);
+	}
+	
+	
+	// ENUMERATIONS	-----------------
+	
+	/**
+	 * These are the different ways a tile map can be drawn
+	 * @author Mikko Hilpinen
+	 * @since 16.10.2026
+	 */
+	public static enum DrawMode
+	{
+		/**
+		 * Each tile is drawn separately each time the map is drawn
+		 */
+		DIRECT,
+		/**
+		 * The tiles are composed into a single backing image, which is then drawn as a 
+		 * whole. Only the areas of the animated tiles that have changed frame are repainted, 
+		 * which makes drawing large and mostly static maps very cheap. The backing image has 
+		 * the map's own resolution, so the map may look less sharp when it is drawn scaled up.
+		 */
+		BACKING_IMAGE,
+		/**
+		 * The tiles that are not animated are baked into a few large images once, which are 
+		 * drawn instead of the individual tiles. The animated tiles are drawn on top of the 
+		 * baked images separately, so they always appear above the static tiles. The baked 
+		 * images have the map's own resolution. They're created again only when the map or 
+		 * the origin changes.
+		 */
+		BAKED_STATIC_LAYER;
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	private static class DrawerListener implements TileMapListener
+	{
+		// ATTRIBUTES	-------------
+		
+		private WeakReference<TileMapDrawer> drawer;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public DrawerListener(TileMapDrawer drawer)
+		{
+			this.drawer = new WeakReference<>(drawer);
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public void onTilesChanged(TileMap map, TileMap.Change change)
+		{
+			// Once the drawer has been collected, the listener detaches itself
+			TileMapDrawer drawer = this.drawer.get();
+			if (drawer == null)
+				map.removeListener(this);
+			else
+				drawer.onTilesChanged(map, change);
+		}
+	}
+	
+	private static class SpriteKey
+	{
+		// ATTRIBUTES	-------------
+		
+		private Sprite sprite;
+		private double width, height;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public SpriteKey(Sprite sprite, Vector3D size)
+		{
+			this.sprite = sprite;
+			this.width = size.getX();
+			this.height = size.getY();
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public int hashCode()
+		{
+			return 31 * (31 * System.identityHashCode(this.sprite) + Double.hashCode(this.width)) + 
+					Double.hashCode(this.height);
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof SpriteKey))
+				return false;
+			
+			SpriteKey other = (SpriteKey) obj;
+			return this.sprite == other.sprite && this.width == other.width && 
+					this.height == other.height;
+		}
+	}
+	
+	private static class ClockKey
+	{
+		// ATTRIBUTES	-------------
+		
+		private Sprite sprite;
+		private double speed;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public ClockKey(Sprite sprite, double speed)
+		{
+			this.sprite = sprite;
+			this.speed = speed;
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public int hashCode()
+		{
+			return 31 * System.identityHashCode(this.sprite) + Double.hashCode(this.speed);
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof ClockKey))
+				return false;
+			
+			ClockKey other = (ClockKey) obj;
+			return this.sprite == other.sprite && this.speed == other.speed;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package utopia.vision.resource;
+
+/**
+ * Tile map listeners are informed whenever tiles are placed on or removed from a tile map
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see TileMap#addListener(TileMapListener)
+ */
+public interface TileMapListener
+{
+	/**
+	 * This method is called after the tiles of a map have changed
+	 * @param map The map that changed
+	 * @param change Describes which tiles were removed from the map and which were inserted
+	 */
+	public void onTilesChanged(TileMap map, TileMap.Change change);
+}
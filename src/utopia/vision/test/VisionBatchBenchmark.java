@@ -0,0 +1,125 @@
+package utopia.vision.test;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import utopia.genesis.util.Vector3D;
+import utopia.vision.resource.Sprite;
+import utopia.vision.resource.SpriteBatch;
+
+/**
+ * This benchmark compares drawing a scene full of sprites one by one to drawing the same 
+ * scene with a sprite batch. The scene mixes two sprites and a few different depths, like 
+ * a game scene would.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+class VisionBatchBenchmark
+{
+	// ATTRIBUTES	---------------
+	
+	private static final int SPRITES = 1000;
+	private static final int WARMUP_ROUNDS = 10;
+	private static final int ROUNDS = 40;
+	
+	
+	// MAIN METHOD	----------------
+	
+	public static void main(String[] args)
+	{
+		try
+		{
+			File file = new File("testData/panic_spell_strip4.png");
+			Sprite[] sprites = new Sprite[] {new Sprite(file, 4, null), 
+					new Sprite(file, 4, Vector3D.ZERO)};
+			
+			// Half of the objects are only moved, the other half are also rotated
+			Random random = new Random(16);
+			Sprite[] objectSprites = new Sprite[SPRITES];
+			AffineTransform[] transforms = new AffineTransform[SPRITES];
+			int[] depths = new int[SPRITES];
+			for (int i = 0; i < SPRITES; i++)
+			{
+				objectSprites[i] = sprites[random.nextInt(sprites.length)];
+				transforms[i] = AffineTransform.getTranslateInstance(random.nextInt(800), 
+						random.nextInt(500));
+				if (i % 2 == 1)
+					transforms[i].rotate(random.nextDouble() * Math.PI * 2);
+				depths[i] = random.nextInt(4);
+			}
+			
+			BufferedImage target = new BufferedImage(800, 500, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g2d = target.createGraphics();
+			SpriteBatch batch = new SpriteBatch();
+			
+			// Both ways are tested twice so that the warmup doesn't favour either one
+			for (int i = 0; i < 2; i++)
+			{
+				System.out.println("One by one: " + benchmark(g2d, null, objectSprites, 
+						transforms, depths) + " ms");
+				System.out.println("Batched: " + benchmark(g2d, batch, objectSprites, 
+						transforms, depths) + " ms");
+			}
+			
+			g2d.dispose();
+		}
+		catch (IOException e)
+		{
+			System.err.println("Resource initialisation failed");
+			e.printStackTrace();
+		}
+	}
+	
+	
+	// OTHER METHODS	-----------
+	
+	private static double benchmark(Graphics2D g2d, SpriteBatch batch, Sprite[] sprites, 
+			AffineTransform[] transforms, int[] depths)
+	{
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+		{
+			drawScene(g2d, batch, sprites, transforms, depths, i);
+		}
+		
+		long started = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+		{
+			drawScene(g2d, batch, sprites, transforms, depths, i);
+		}
+		return (System.nanoTime() - started) / 1000000.0;
+	}
+	
+	private static void drawScene(Graphics2D g2d, SpriteBatch batch, Sprite[] sprites, 
+			AffineTransform[] transforms, int[] depths, int frameIndex)
+	{
+		if (batch == null)
+		{
+			// The objects are drawn in depth order, like the handlers would draw them
+			for (int depth = 3; depth >= 0; depth--)
+			{
+				for (int i = 0; i < sprites.length; i++)
+				{
+					if (depths[i] != depth)
+						continue;
+					
+					AffineTransform lastTransform = g2d.getTransform();
+					g2d.transform(transforms[i]);
+					Sprite.drawSprite(sprites[i], frameIndex, null, g2d);
+					g2d.setTransform(lastTransform);
+				}
+			}
+		}
+		else
+		{
+			for (int i = 0; i < sprites.length; i++)
+			{
+				batch.draw(sprites[i], frameIndex, null, transforms[i], 1, depths[i]);
+			}
+			batch.flush(g2d);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package utopia.vision.test;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.File;
+import java.io.IOException;
+
+import utopia.genesis.util.Vector3D;
+import utopia.vision.resource.Sprite;
+import utopia.vision.util.CompatibleImages;
+
+/**
+ * This benchmark compares the drawing speed of sprites loaded with and without compatible
+ * frames. The sprites are drawn on a volatile image or, in a headless environment, on a
+ * buffered image.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+class VisionBlitBenchmark
+{
+	// ATTRIBUTES	---------------
+	
+	private static final int WARMUP_ROUNDS = 2000;
+	private static final int ROUNDS = 20000;
+	
+	
+	// MAIN METHOD	----------------
+	
+	public static void main(String[] args)
+	{
+		try
+		{
+			File file = new File("testData/panic_spell_strip4.png");
+			
+			Sprite.setCompatibleFramesUsed(false);
+			Sprite sourceSprite = new Sprite(file, 4, Vector3D.ZERO);
+			Sprite.setCompatibleFramesUsed(true);
+			Sprite compatibleSprite = new Sprite(file, 4, Vector3D.ZERO);
+			
+			System.out.println("Source frame type: " + sourceSprite.getFrame(0).getType());
+			System.out.println("Compatible frame type: " + compatibleSprite.getFrame(0).getType());
+			
+			// Both sprites are drawn a couple of times, since the acceleration kicks in only
+			// after the frames have been drawn unchanged a few times
+			System.out.println("Source frames: " + benchmark(sourceSprite) + " ms");
+			System.out.println("Compatible frames: " + benchmark(compatibleSprite) + " ms");
+			System.out.println("Source frames: " + benchmark(sourceSprite) + " ms");
+			System.out.println("Compatible frames: " + benchmark(compatibleSprite) + " ms");
+		}
+		catch (IOException e)
+		{
+			System.err.println("Resource initialisation failed");
+			e.printStackTrace();
+		}
+	}
+	
+	
+	// OTHER METHODS	-----------
+	
+	private static double benchmark(Sprite sprite)
+	{
+		GraphicsConfiguration configuration = CompatibleImages.getTargetConfiguration();
+		VolatileImage volatileTarget = null;
+		BufferedImage bufferedTarget = null;
+		Graphics2D g2d;
+		if (configuration == null)
+		{
+			bufferedTarget = new BufferedImage(800, 500, BufferedImage.TYPE_INT_RGB);
+			g2d = bufferedTarget.createGraphics();
+		}
+		else
+		{
+			volatileTarget = configuration.createCompatibleVolatileImage(800, 500);
+			g2d = volatileTarget.createGraphics();
+		}
+		
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+		{
+			Sprite.drawSprite(sprite, i, null, g2d);
+		}
+		
+		long started = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+		{
+			Sprite.drawSprite(sprite, i, null, g2d);
+		}
+		// Makes sure all of the drawing has actually been done
+		if (volatileTarget != null)
+			volatileTarget.getSnapshot();
+		double millis = (System.nanoTime() - started) / 1000000.0;
+		
+		g2d.dispose();
+		if (volatileTarget != null)
+			volatileTarget.flush();
+		
+		return millis;
+	}
+}
@@ -0,0 +1,171 @@
+package utopia.vision.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import utopia.vision.filter.HSBFilter;
+import utopia.vision.filter.HSBFilter.ColourTarget;
+
+/**
+ * This benchmark compares the speed of the hsb filter to the original implementation, which 
+ * converted each pixel with a new array and calculated the effect of the colour target for 
+ * each pixel. The results of the two implementations are also compared. A 512 x 512 sprite 
+ * sheet and an image full of noise are filtered with and without a colour target.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+class VisionFilterBenchmark
+{
+	// ATTRIBUTES	---------------
+	
+	private static final int WARMUP_ROUNDS = 10;
+	private static final int ROUNDS = 20;
+	
+	
+	// MAIN METHOD	----------------
+	
+	public static void main(String[] args)
+	{
+		try
+		{
+			BufferedImage strip = ImageIO.read(new File("testData/panic_spell_strip4.png"));
+			BufferedImage sheet = new BufferedImage(512, 512, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g2d = sheet.createGraphics();
+			for (int y = 0; y < sheet.getHeight(); y += strip.getHeight())
+			{
+				for (int x = 0; x < sheet.getWidth(); x += strip.getWidth())
+				{
+					g2d.drawImage(strip, x, y, null);
+				}
+			}
+			g2d.dispose();
+			
+			Random random = new Random(21);
+			BufferedImage noise = new BufferedImage(512, 512, BufferedImage.TYPE_INT_ARGB);
+			for (int y = 0; y < noise.getHeight(); y++)
+			{
+				for (int x = 0; x < noise.getWidth(); x++)
+				{
+					noise.setRGB(x, y, random.nextInt());
+				}
+			}
+			
+			ColourTarget target = new ColourTarget(new Color(200, 40, 40), 200, true);
+			
+			for (int i = 0; i < 2; i++)
+			{
+				benchmark("Sprite sheet", sheet, null);
+				benchmark("Noise", noise, null);
+				benchmark("Targeted sprite sheet", sheet, target);
+				benchmark("Targeted noise", noise, target);
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Resource initialisation failed");
+			e.printStackTrace();
+		}
+	}
+	
+	
+	// OTHER METHODS	-----------
+	
+	private static void benchmark(String name, BufferedImage image, ColourTarget target)
+	{
+		HSBFilter filter = new HSBFilter(0.4, 0.2, target);
+		BufferedImage filtered = null;
+		BufferedImage original = null;
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+		{
+			filtered = filter.filter(image);
+			original = originalFilter(image, 0.4, 0.2, target);
+		}
+		
+		long started = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+		{
+			filtered = filter.filter(image);
+		}
+		double filterMillis = (System.nanoTime() - started) / 1000000.0 / ROUNDS;
+		
+		started = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+		{
+			original = originalFilter(image, 0.4, 0.2, target);
+		}
+		double originalMillis = (System.nanoTime() - started) / 1000000.0 / ROUNDS;
+		
+		int differentPixels = 0;
+		for (int y = 0; y < image.getHeight(); y++)
+		{
+			for (int x = 0; x < image.getWidth(); x++)
+			{
+				if (filtered.getRGB(x, y) != original.getRGB(x, y))
+					differentPixels++;
+			}
+		}
+		
+		System.out.println(name + ": " + filterMillis + " ms, originally " + originalMillis + 
+				" ms, " + differentPixels + " different pixels");
+	}
+	
+	// The original implementation of the hsb filter
+	private static BufferedImage originalFilter(BufferedImage image, double hueAdjustment, 
+			double saturationAdjustment, ColourTarget target)
+	{
+		int[] pixels = new int[image.getWidth() * image.getHeight()];
+		image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+		
+		for (int i = 0; i < pixels.length; i++)
+		{
+			int pixel = pixels[i];
+			int red = pixel >> 16 & 0xFF;
+			int green = pixel >> 8 & 0xFF;
+			int blue = pixel & 0xFF;
+			
+			// The effect modifier is calculated like the colour target used to calculate it
+			double effectModifier = 1;
+			if (target != null)
+			{
+				int difference = Math.abs(200 - red) + Math.abs(40 - green) + 
+						Math.abs(40 - blue);
+				effectModifier = 0;
+				if (difference <= 200)
+					effectModifier = 1 - 0.5 * (Math.sin(difference / 200.0 * Math.PI - 
+							Math.PI / 2) + 1);
+			}
+			
+			if (effectModifier > 0)
+			{
+				float[] hsb = new float[3];
+				Color.RGBtoHSB(red, green, blue, hsb);
+				
+				hsb[0] += hueAdjustment * effectModifier;
+				if (hsb[0] > 1)
+					hsb[0] -= 1;
+				else if (hsb[0] < 0)
+					hsb[0] += 1;
+				
+				hsb[1] += saturationAdjustment * effectModifier;
+				if (hsb[1] > 1)
+					hsb[1] = 1;
+				else if (hsb[1] < 0)
+					hsb[1] = 0;
+				
+				pixels[i] = (Color.HSBtoRGB(hsb[0], hsb[1], hsb[2]) & 0xFFFFFF) |
+						(pixel & 0xFF000000);
+			}
+		}
+		
+		BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(), 
+				BufferedImage.TYPE_INT_ARGB);
+		newImage.setRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+		return newImage;
+	}
+}
@@ -0,0 +1,131 @@
+package utopia.vision.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import utopia.genesis.event.Actor;
+import utopia.inception.util.SimpleHandled;
+import utopia.vision.resource.AnimationClock;
+import utopia.vision.resource.Sprite;
+
+/**
+ * The registry holds the animation clocks shared by the drawers in a program. There's a 
+ * single clock for each animation length + speed combination and the registry advances each 
+ * clock once per step. The registry should be added to a step handler, after which the 
+ * drawers that use its clocks don't need to be animated separately. The cost of animation 
+ * then depends from the number of distinct clocks instead of the number of drawers.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @see utopia.vision.resource.SpriteDrawer#setAnimationClock(AnimationClock, int)
+ */
+public class AnimationClockRegistry extends SimpleHandled implements Actor
+{
+	// ATTRIBUTES	-----------------
+	
+	private Map<ClockKey, AnimationClock> clocks = new HashMap<>();
+	private List<AnimationClock> clockList = new ArrayList<>();
+	
+	
+	// IMPLEMENTED METHODS	---------
+	
+	@Override
+	public void act(double duration)
+	{
+		for (int i = 0; i < this.clockList.size(); i++)
+		{
+			this.clockList.get(i).animate(duration);
+		}
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Finds the shared clock for an animation. A new clock is created if necessary.
+	 * @param length The length of the animation in frames
+	 * @param framesPerSecond How fast the animation proceeds (frames / second)
+	 * @return The clock shared by the animations of the same length and speed
+	 */
+	public AnimationClock getClock(int length, double framesPerSecond)
+	{
+		ClockKey key = new ClockKey(length, framesPerSecond);
+		AnimationClock clock = this.clocks.get(key);
+		if (clock == null)
+		{
+			clock = new AnimationClock(length, framesPerSecond);
+			this.clocks.put(key, clock);
+			this.clockList.add(clock);
+		}
+		
+		return clock;
+	}
+	
+	/**
+	 * Finds the shared clock for a sprite's animation
+	 * @param sprite The sprite that is animated at its default speed
+	 * @return The clock shared by the animations of the same length and speed
+	 */
+	public AnimationClock getClock(Sprite sprite)
+	{
+		return getClock(sprite.getLength(), sprite.getDefaultAnimationSpeed());
+	}
+	
+	/**
+	 * @return How many distinct clocks there are in this registry
+	 */
+	public int getClockAmount()
+	{
+		return this.clockList.size();
+	}
+	
+	/**
+	 * Removes all clocks from this registry. The drawers that still use the clocks are no 
+	 * longer animated.
+	 */
+	public void clear()
+	{
+		this.clocks.clear();
+		this.clockList.clear();
+	}
+	
+	
+	// NESTED CLASSES	-------------
+	
+	private static class ClockKey
+	{
+		// ATTRIBUTES	-------------
+		
+		private int length;
+		private double speed;
+		
+		
+		// CONSTRUCTOR	-------------
+		
+		public ClockKey(int length, double speed)
+		{
+			this.length = length;
+			this.speed = speed;
+		}
+		
+		
+		// IMPLEMENTED METHODS	-----
+		
+		@Override
+		public int hashCode()
+		{
+			return 31 * this.length + Double.hashCode(this.speed);
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof ClockKey))
+				return false;
+			
+			ClockKey other = (ClockKey) obj;
+			return this.length == other.length && this.speed == other.speed;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package utopia.vision.util;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * This is a static interface for creating images that use the fastest pixel layout available
+ * for the screen. Such images can be accelerated (managed) by Java2D.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class CompatibleImages
+{
+	// ATTRIBUTES	-----------------
+	
+	private static volatile GraphicsConfiguration configuration = null;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private CompatibleImages()
+	{
+		// Static interface
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * Changes the graphics configuration the images are made compatible with. By default, the
+	 * configuration of the default screen device is used.
+	 * @param configuration The targeted graphics configuration. Null for default.
+	 */
+	public static synchronized void setTargetConfiguration(GraphicsConfiguration configuration)
+	{
+		CompatibleImages.configuration = configuration;
+	}
+	
+	/**
+	 * @return The graphics configuration the images are made compatible with. Null when
+	 * running in a headless environment.
+	 */
+	public static GraphicsConfiguration getTargetConfiguration()
+	{
+		GraphicsConfiguration configuration = CompatibleImages.configuration;
+		if (configuration == null && !GraphicsEnvironment.isHeadless())
+		{
+			// The default is initialised only once and never replaces a configuration that 
+			// was set at the same time
+			synchronized (CompatibleImages.class)
+			{
+				if (CompatibleImages.configuration == null)
+					CompatibleImages.configuration = GraphicsEnvironment.
+							getLocalGraphicsEnvironment().getDefaultScreenDevice().
+							getDefaultConfiguration();
+				configuration = CompatibleImages.configuration;
+			}
+		}
+		return configuration;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Creates a new empty image that supports translucency. The image uses the pixel layout
+	 * of the target configuration or premultiplied ARGB in a headless environment.
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @return A new compatible image
+	 */
+	public static BufferedImage create(int width, int height)
+	{
+		GraphicsConfiguration configuration = getTargetConfiguration();
+		if (configuration == null)
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		else
+			return configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+	}
+	
+	/**
+	 * Copies an area of an image into a new compatible image. The copy doesn't share any data
+	 * with the source image.
+	 * @param source The source image
+	 * @param x The x-coordinate of the copied area
+	 * @param y The y-coordinate of the copied area
+	 * @param width The width of the copied area
+	 * @param height The height of the copied area
+	 * @return A compatible copy of the area
+	 */
+	public static BufferedImage copy(BufferedImage source, int x, int y, int width, int height)
+	{
+		BufferedImage copy = create(width, height);
+		Graphics2D g2d = copy.createGraphics();
+		g2d.setComposite(AlphaComposite.Src);
+		g2d.drawImage(source, 0, 0, width, height, x, y, x + width, y + height, null);
+		g2d.dispose();
+		
+		return copy;
+	}
+	
+	/**
+	 * Copies an image into a new compatible image
+	 * @param source The source image
+	 * @return A compatible copy of the image
+	 */
+	public static BufferedImage copy(BufferedImage source)
+	{
+		return copy(source, 0, 0, source.getWidth(), source.getHeight());
+	}
+}
@@ -0,0 +1,130 @@
+package utopia.vision.util;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The image buffer pool keeps released ARGB images so that they can be reused instead of 
+ * creating new images. The filters use the pool for their intermediate images, for example. 
+ * The pooled images are not cleared, so the user of an image should overwrite all of its 
+ * pixels.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ */
+public class ImageBufferPool
+{
+	// ATTRIBUTES	-----------------
+	
+	/**
+	 * The default maximum amount of image data kept in the pool, in bytes
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 32 * 1024 * 1024;
+	
+	private static final Map<Long, Deque<BufferedImage>> IMAGES = new HashMap<>();
+	private static long maxBytes = DEFAULT_MEMORY_BUDGET, pooledBytes = 0;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	private ImageBufferPool()
+	{
+		// Static interface
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * Changes the amount of image data kept in the pool. Images released once the pool is 
+	 * full are left for the garbage collector.
+	 * @param maxBytes The maximum amount of pooled image data, in bytes
+	 */
+	public static synchronized void setMaxBytes(long maxBytes)
+	{
+		ImageBufferPool.maxBytes = maxBytes;
+		if (pooledBytes > maxBytes)
+			clear();
+	}
+	
+	/**
+	 * @return The maximum amount of image data kept in the pool, in bytes
+	 */
+	public static synchronized long getMaxBytes()
+	{
+		return maxBytes;
+	}
+	
+	/**
+	 * @return The amount of image data currently waiting in the pool, in bytes
+	 */
+	public static synchronized long getPooledBytes()
+	{
+		return pooledBytes;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Finds an ARGB image of the provided size, creating a new one if there is none in the 
+	 * pool
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @return An image of type {@link BufferedImage#TYPE_INT_ARGB}. The image may contain 
+	 * the pixels of its previous use.
+	 */
+	public static synchronized BufferedImage acquire(int width, int height)
+	{
+		Deque<BufferedImage> images = IMAGES.get(toKey(width, height));
+		if (images == null || images.isEmpty())
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		
+		BufferedImage image = images.pop();
+		pooledBytes -= ImageCache.sizeOf(image);
+		return image;
+	}
+	
+	/**
+	 * Returns an image to the pool. The image shouldn't be used after it has been released. 
+	 * Only ARGB images are pooled.
+	 * @param image The image that is no longer used. May be null.
+	 */
+	public static synchronized void release(BufferedImage image)
+	{
+		if (image == null || image.getType() != BufferedImage.TYPE_INT_ARGB)
+			return;
+		
+		long size = ImageCache.sizeOf(image);
+		if (pooledBytes + size > maxBytes)
+			return;
+		
+		Deque<BufferedImage> images = IMAGES.computeIfAbsent( 
+				toKey(image.getWidth(), image.getHeight()), key -> new ArrayDeque<>());
+		// An image released twice must not be given to two users
+		for (BufferedImage pooled : images)
+		{
+			if (pooled == image)
+				return;
+		}
+		
+		images.push(image);
+		pooledBytes += size;
+	}
+	
+	/**
+	 * Removes all images from the pool
+	 */
+	public static synchronized void clear()
+	{
+		IMAGES.clear();
+		pooledBytes = 0;
+	}
+	
+	private static long toKey(int width, int height)
+	{
+		return ((long) width << 32) | (height & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,274 @@
+package utopia.vision.util;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * An image cache holds images up to a certain memory budget. Once the budget is exceeded, the 
+ * least recently (or least frequently) used images are removed from the cache. New images 
+ * start from the lowest use count in the cache, so that a burst of new images doesn't 
+ * always replace each other first.
+ * @author Mikko Hilpinen
+ * @since 16.10.2026
+ * @param <K> The type of key used for identifying the cached images
+ */
+public class ImageCache<K>
+{
+	// ATTRIBUTES	-----------------
+	
+	private LinkedHashMap<K, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+	private Map<K, int[]> useCounts = new HashMap<>();
+	// The keys grouped by their use counts. Each group is in the order of the latest use.
+	private TreeMap<Integer, LinkedHashSet<K>> frequencies = new TreeMap<>();
+	private long maxBytes, usedBytes = 0;
+	private EvictionPolicy policy;
+	
+	
+	// CONSTRUCTOR	-----------------
+	
+	/**
+	 * Creates a new empty cache that removes the least recently used images first
+	 * @param maxBytes The maximum amount of image data held in this cache, in bytes
+	 */
+	public ImageCache(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+		this.policy = EvictionPolicy.LEAST_RECENTLY_USED;
+	}
+	
+	/**
+	 * Creates a new empty cache
+	 * @param maxBytes The maximum amount of image data held in this cache, in bytes
+	 * @param policy The way the removed images are selected when the budget is exceeded
+	 */
+	public ImageCache(long maxBytes, EvictionPolicy policy)
+	{
+		this.maxBytes = maxBytes;
+		this.policy = policy;
+	}
+	
+	
+	// ACCESSORS	-----------------
+	
+	/**
+	 * @return The maximum amount of image data held in this cache, in bytes
+	 */
+	public synchronized long getMaxBytes()
+	{
+		return this.maxBytes;
+	}
+	
+	/**
+	 * Changes the memory budget of this cache. Images are removed if necessary.
+	 * @param maxBytes The maximum amount of image data held in this cache, in bytes
+	 */
+	public synchronized void setMaxBytes(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+		evict();
+	}
+	
+	/**
+	 * @return The way the removed images are selected when the budget is exceeded
+	 */
+	public synchronized EvictionPolicy getEvictionPolicy()
+	{
+		return this.policy;
+	}
+	
+	/**
+	 * Changes the way the removed images are selected when the budget is exceeded
+	 * @param policy The new eviction policy
+	 */
+	public synchronized void setEvictionPolicy(EvictionPolicy policy)
+	{
+		this.policy = policy;
+	}
+	
+	/**
+	 * @return The amount of image data currently held in this cache, in bytes
+	 */
+	public synchronized long getUsedBytes()
+	{
+		return this.usedBytes;
+	}
+	
+	
+	// OTHER METHODS	-------------
+	
+	/**
+	 * Finds an image from the cache
+	 * @param key The key of the image
+	 * @return The cached image or null if the image isn't cached
+	 */
+	public synchronized BufferedImage get(K key)
+	{
+		BufferedImage image = this.images.get(key);
+		if (image != null)
+		{
+			int[] uses = this.useCounts.get(key);
+			removeFrequency(key, uses[0]);
+			uses[0] ++;
+			addFrequency(key, uses[0]);
+		}
+		return image;
+	}
+	
+	/**
+	 * Places an image into the cache. Images larger than the whole memory budget are not 
+	 * cached, but they still remove the previous image with the same key.
+	 * @param key The key of the image
+	 * @param image The image that is cached
+	 */
+	public synchronized void put(K key, BufferedImage image)
+	{
+		// An image that doesn't fit isn't cached, but it still replaces the previous image
+		long size = sizeOf(image);
+		if (size > this.maxBytes)
+		{
+			remove(key);
+			return;
+		}
+		
+		BufferedImage previous = this.images.put(key, image);
+		if (previous != null)
+			this.usedBytes -= sizeOf(previous);
+		else
+		{
+			// New images are admitted at the frequency of the next image to be removed
+			int uses = this.frequencies.isEmpty() ? 1 : this.frequencies.firstKey();
+			this.useCounts.put(key, new int[] {uses});
+			addFrequency(key, uses);
+		}
+		this.usedBytes += size;
+		
+		evict();
+	}
+	
+	/**
+	 * Removes an image from the cache
+	 * @param key The key of the removed image
+	 * @return The image that was removed or null if there was no such image
+	 */
+	public synchronized BufferedImage remove(K key)
+	{
+		BufferedImage removed = this.images.remove(key);
+		if (removed != null)
+		{
+			this.usedBytes -= sizeOf(removed);
+			removeFrequency(key, this.useCounts.remove(key)[0]);
+		}
+		return removed;
+	}
+	
+	/**
+	 * Removes all images whose keys fulfil a condition
+	 * @param condition The condition that determines whether an image is removed
+	 */
+	public synchronized void removeIf(Predicate<? super K> condition)
+	{
+		Iterator<Map.Entry<K, BufferedImage>> iterator = this.images.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<K, BufferedImage> entry = iterator.next();
+			if (condition.test(entry.getKey()))
+			{
+				this.usedBytes -= sizeOf(entry.getValue());
+				removeFrequency(entry.getKey(), this.useCounts.remove(entry.getKey())[0]);
+				iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Removes all images from the cache
+	 */
+	public synchronized void clear()
+	{
+		this.images.clear();
+		this.useCounts.clear();
+		this.frequencies.clear();
+		this.usedBytes = 0;
+	}
+	
+	/**
+	 * Estimates the amount of memory used by an image's pixels
+	 * @param image an image
+	 * @return The size of the image's pixel data in bytes
+	 */
+	public static long sizeOf(BufferedImage image)
+	{
+		int bitsPerPixel = image.getColorModel().getPixelSize();
+		return (long) image.getWidth() * image.getHeight() * Math.max(1, bitsPerPixel / 8);
+	}
+	
+	private void evict()
+	{
+		if (this.policy == EvictionPolicy.LEAST_RECENTLY_USED)
+		{
+			// The map is in access order so the least recently used images come first
+			Iterator<Map.Entry<K, BufferedImage>> iterator = this.images.entrySet().iterator();
+			while (this.usedBytes > this.maxBytes && iterator.hasNext())
+			{
+				Map.Entry<K, BufferedImage> entry = iterator.next();
+				this.usedBytes -= sizeOf(entry.getValue());
+				removeFrequency(entry.getKey(), this.useCounts.remove(entry.getKey())[0]);
+				iterator.remove();
+			}
+		}
+		else
+		{
+			// The least frequently used image is the first one in the lowest group. Ties are 
+			// resolved by recency.
+			while (this.usedBytes > this.maxBytes && !this.frequencies.isEmpty())
+			{
+				remove(this.frequencies.firstEntry().getValue().iterator().next());
+			}
+		}
+	}
+	
+	private void addFrequency(K key, int uses)
+	{
+		LinkedHashSet<K> keys = this.frequencies.get(uses);
+		if (keys == null)
+		{
+			keys = new LinkedHashSet<>();
+			this.frequencies.put(uses, keys);
+		}
+		keys.add(key);
+	}
+	
+	private void removeFrequency(K key, int uses)
+	{
+		LinkedHashSet<K> keys = this.frequencies.get(uses);
+		keys.remove(key);
+		if (keys.isEmpty())
+			this.frequencies.remove(uses);
+	}
+	
+	
+	// ENUMERATIONS	-----------------
+	
+	/**
+	 * These are the different ways the cached images can be selected for removal
+	 * @author Mikko Hilpinen
+	 * @since 16.10.2026
+	 */
+	public static enum EvictionPolicy
+	{
+		/**
+		 * The images that haven't been used for the longest time are removed first
+		 */
+		LEAST_RECENTLY_USED,
+		/**
+		 * The images that have been used the least amount of times are removed first
+		 */
+		LEAST_FREQUENTLY_USED;
+	}
+}
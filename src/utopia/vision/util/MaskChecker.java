@@ -117,6 +117,6 @@ public class MaskChecker
 		// Subtracts the scaling as well
 		inSpritePosition = inSpritePosition.dividedBy(sprite.getScaling());
 		
-		return sprite.getFrame(frameIndex).getRGB(inSpritePosition.getXInt(), inSpritePosition.getYInt());
+		return sprite.getRGB(frameIndex, inSpritePosition.getXInt(), inSpritePosition.getYInt());
 	}
 }
@@ -63,6 +63,12 @@ public class SpriteQueueSetter extends SimpleHandled implements AnimationEventLi
 		return this.selector;
 	}
 
+	@Override
+	public int getAnimationEventTypeMask()
+	{
+		return EventType.ANIMATION_COMPLETED.getMask();
+	}
+
 	@Override
 	public void onAnimationEvent(AnimationEvent event)
 	{